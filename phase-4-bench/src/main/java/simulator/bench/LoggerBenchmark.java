@@ -0,0 +1,67 @@
+/**
+ * Benchmark for logging throughput.
+ * Logs process events to a file in both the synchronous and the
+ * asynchronous mode, from one thread and from several at once.
+ */
+
+package simulator.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark
+{
+    @Param({ "sync", "async" })
+    public String logMode;
+
+    private Object context;
+
+    @Setup(Level.Trial)
+    public void openLog() throws IOException
+    {
+        Simulator.Settings settings = new Simulator.Settings();
+        settings.logMode = logMode;
+        context = Simulator.newSimulation(Simulator.writeConfig(settings));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void logEvent()
+    {
+        Simulator.logEvent(context, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logEventContended()
+    {
+        Simulator.logEvent(context, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeLog()
+    {
+        Simulator.closeLog(context);
+    }
+}
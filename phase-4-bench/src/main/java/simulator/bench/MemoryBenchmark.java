@@ -0,0 +1,89 @@
+/**
+ * Benchmark for the memory allocator.
+ * Allocates a batch of blocks and then frees them, so the address
+ * space never runs out however long the benchmark runs. A share of the
+ * blocks stays allocated the whole time, spread out across memory, so
+ * the allocator has to search past used blocks to find free ones.
+ */
+
+package simulator.bench;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryBenchmark
+{
+    private static final int BATCH_SIZE = 1024;
+    private static final int BATCH_PROCESS = 1;
+    private static final int RESIDENT_PROCESS = 2;
+
+    /**
+     * \brief System memory in kbytes, with 128 bit blocks this is
+     *        125 thousand, 12.5 million, and 62.5 million blocks.
+     */
+    @Param({ "2000", "200000", "1000000" })
+    public int memoryKB;
+
+    private final long[] addresses = new long[BATCH_SIZE];
+    private Object context;
+
+    @Setup(Level.Trial)
+    public void configure() throws IOException
+    {
+        Simulator.Settings settings = new Simulator.Settings();
+        settings.memoryKB = memoryKB;
+        settings.blockSize = 128;
+        context = Simulator.newSimulation(Simulator.writeConfig(settings));
+
+        // Fill the start of memory, then free every other block of it
+        Random random = new Random(446);
+        long[] resident = new long[BATCH_SIZE * 16];
+        for (int i = 0; i < resident.length; i++)
+            resident[i] = Simulator.allocate(context, RESIDENT_PROCESS);
+        for (int i = 0; i < resident.length; i += 1 + random.nextInt(2))
+            Simulator.free(context, RESIDENT_PROCESS, resident[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long allocateAndFree()
+    {
+        long sum = 0;
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            addresses[i] = Simulator.allocate(context, BATCH_PROCESS);
+            sum += addresses[i];
+        }
+        for (int i = 0; i < BATCH_SIZE; i++)
+            Simulator.free(context, BATCH_PROCESS, addresses[i]);
+        return sum;
+    }
+
+    @TearDown(Level.Trial)
+    public void closeLog()
+    {
+        Simulator.closeLog(context);
+    }
+}
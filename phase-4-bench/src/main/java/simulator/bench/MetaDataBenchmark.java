@@ -0,0 +1,92 @@
+/**
+ * Benchmark for loading meta data.
+ * Measures OperatingSystem.readMetaData() on generated workloads of
+ * increasing size, both as meta data text and compiled by
+ * WorkloadCompiler. Every invocation gets a fresh simulation, so the
+ * ready queues start out empty each time.
+ */
+
+package simulator.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetaDataBenchmark
+{
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int numOperations;
+
+    @Param({ "ps", "fifo" })
+    public String scheduleCode;
+
+    @Param({ "text", "compiled" })
+    public String format;
+
+    private File config;
+    private File workload;
+    private Object context;
+    private Object os;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException
+    {
+        workload = Simulator.writeMetaData(numOperations, 10);
+
+        Simulator.Settings settings = new Simulator.Settings();
+        settings.scheduleCode = scheduleCode;
+        config = Simulator.writeConfig(settings);
+
+        if (format.equals("compiled"))
+        {
+            Object compiler = Simulator.newSimulation(config);
+            workload = Simulator.compileWorkload(compiler, workload);
+            Simulator.closeLog(compiler);
+        }
+    }
+
+    /**
+     * \brief Creates an operating system with no processes loaded,
+     *        then points it at the generated workload.
+     */
+    @Setup(Level.Invocation)
+    public void createOperatingSystem()
+    {
+        context = Simulator.newSimulation(config);
+        os = Simulator.newOperatingSystem(context);
+        Simulator.setMetaDataPath(context, workload.getPath());
+    }
+
+    @Benchmark
+    public Object readMetaData()
+    {
+        Simulator.readMetaData(os);
+        return os;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLog()
+    {
+        Simulator.closeLog(context);
+    }
+}
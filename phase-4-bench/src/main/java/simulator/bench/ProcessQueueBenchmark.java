@@ -0,0 +1,82 @@
+/**
+ * Benchmark for the schedulers' ready queues.
+ * Admits processes to a scheduler and takes them all out again through
+ * the Scheduler interface, the way a core does. PS and SJF are measured
+ * both on the ready heap and on the PriorityQueue it replaced.
+ */
+
+package simulator.bench;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ProcessQueueBenchmark
+{
+    @Param({ "100000", "1000000", "10000000" })
+    public int numProcesses;
+
+    @Param({ "ps", "sjf" })
+    public String scheduleCode;
+
+    @Param({ "ReadyHeap", "PriorityQueue" })
+    public String queue;
+
+    private Object context;
+    private Object scheduler;
+    private Object[] processes;
+
+    @Setup(Level.Trial)
+    public void createProcesses() throws IOException
+    {
+        context = Simulator.newSimulation(Simulator.writeConfig(new Simulator.Settings()));
+        if (queue.equals("PriorityQueue"))
+            scheduler = Simulator.newPriorityQueueScheduler(context, scheduleCode);
+        else
+            scheduler = Simulator.newScheduler(context, scheduleCode);
+
+        Random random = new Random(446);
+        processes = new Object[numProcesses];
+        for (int i = 0; i < numProcesses; i++)
+            processes[i] = Simulator.newProcess(context, i + 1, random.nextInt(20),
+                                                random.nextInt(50));
+    }
+
+    @Benchmark
+    public void addAndPoll(Blackhole blackhole)
+    {
+        for (Object pcb : processes)
+            Simulator.admit(scheduler, pcb);
+
+        Object pcb;
+        while ((pcb = Simulator.pickNext(scheduler)) != null)
+            blackhole.consume(pcb);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeLog()
+    {
+        Simulator.closeLog(context);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Benchmark for device acquisition under contention.
+ * Several threads acquire and release hard drives in a loop, the same
+ * way the IO executor's threads do in real time.
+ */
+
+package simulator.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceManagerBenchmark
+{
+    @Param({ "1", "2", "4" })
+    public int hardDriveQuantity;
+
+    private Object context;
+    private Object operation;
+
+    @Setup(Level.Trial)
+    public void configure() throws IOException
+    {
+        Simulator.Settings settings = new Simulator.Settings();
+        settings.clockMode = "real";
+        settings.hardDriveQuantity = hardDriveQuantity;
+        context = Simulator.newSimulation(Simulator.writeConfig(settings));
+        operation = Simulator.newOperation("OUTPUT", "HARD_DRIVE", 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void acquireRelease()
+    {
+        Simulator.releaseResource(context, operation,
+                                  Simulator.acquireResource(context, operation));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void acquireReleaseContended()
+    {
+        Simulator.releaseResource(context, operation,
+                                  Simulator.acquireResource(context, operation));
+    }
+
+    @TearDown(Level.Trial)
+    public void closeLog()
+    {
+        Simulator.closeLog(context);
+    }
+}
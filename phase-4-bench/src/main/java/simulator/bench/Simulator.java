@@ -0,0 +1,392 @@
+/**
+ * Bridge from the benchmarks to the simulator classes.
+ * The simulator lives in the default package, which JMH does not allow
+ * benchmarks in and which no named package can import. The simulator's
+ * BenchmarkBridge class has a public static method for everything the
+ * benchmarks need, which calls the simulator directly, so renaming
+ * anything in the simulator breaks the build rather than the benchmarks.
+ * Its methods are looked up once, by their exact signatures, and kept as
+ * method handles, so calling them costs about the same as a direct call.
+ * Every call takes the simulation context it runs in.
+ * This class also writes the configuration and meta data files the
+ * benchmarks run on.
+ */
+
+package simulator.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+final class Simulator
+{
+    private static final Class<?> BRIDGE = bridgeClass();
+
+    private static final MethodHandle NEW_SIMULATION = bridge("newSimulation", Object.class,
+                                                              String.class);
+    private static final MethodHandle GENERATE_META_DATA = bridge("generateMetaData", File.class,
+                                                                  int.class, int.class);
+    private static final MethodHandle NEW_OPERATING_SYSTEM = bridge("newOperatingSystem", Object.class,
+                                                                    Object.class);
+    private static final MethodHandle READ_META_DATA = bridge("readMetaData", void.class, Object.class);
+    private static final MethodHandle COMPILE_WORKLOAD = bridge("compileWorkload", void.class,
+                                                                Object.class, String.class,
+                                                                String.class);
+    private static final MethodHandle SET_META_DATA_PATH = bridge("setMetaDataPath", void.class,
+                                                                  Object.class, String.class);
+    private static final MethodHandle NEW_PROCESS = bridge("newProcess", Object.class, Object.class,
+                                                           int.class, int.class, int.class);
+    private static final MethodHandle NEW_OPERATION = bridge("newOperation", Object.class,
+                                                             String.class, String.class, int.class);
+    private static final MethodHandle LOG_EVENT = bridge("logEvent", void.class, Object.class,
+                                                         int.class);
+    private static final MethodHandle CLOSE_LOG = bridge("closeLog", void.class, Object.class);
+    private static final MethodHandle ALLOCATE = bridge("allocate", long.class, Object.class,
+                                                        int.class);
+    private static final MethodHandle FREE = bridge("free", void.class, Object.class, int.class,
+                                                    long.class);
+    private static final MethodHandle ACQUIRE_RESOURCE = bridge("acquireResource", int.class,
+                                                                Object.class, Object.class);
+    private static final MethodHandle RELEASE_RESOURCE = bridge("releaseResource", void.class,
+                                                                Object.class, Object.class,
+                                                                int.class);
+    private static final MethodHandle NEW_SCHEDULER = bridge("newScheduler", Object.class,
+                                                             Object.class, String.class);
+    private static final MethodHandle NEW_PRIORITY_QUEUE_SCHEDULER =
+        bridge("newPriorityQueueScheduler", Object.class, Object.class, String.class);
+    private static final MethodHandle ADMIT = bridge("admit", void.class, Object.class, Object.class);
+    private static final MethodHandle PICK_NEXT = bridge("pickNext", Object.class, Object.class);
+
+    private Simulator()
+    {
+    }
+
+    /**
+     * \brief Settings for a configuration file.
+     * \details Defaults to a virtual clock with IO run on the caller and
+     *          the log going to a file, so nothing is printed while the
+     *          benchmarks run.
+     */
+    static final class Settings
+    {
+        String mdfPath = "";
+        String scheduleCode = "FIFO";
+        String clockMode = "virtual";
+        String ioMode = "caller";
+        String logMode = "sync";
+        String logPath = "";
+        int memoryKB = 2048;
+        int blockSize = 128;
+        int projectorQuantity = 4;
+        int hardDriveQuantity = 2;
+    }
+
+    /**
+     * \brief Writes a configuration file.
+     * \return The temporary file, deleted when the JVM exits.
+     */
+    static File writeConfig(Settings settings) throws IOException
+    {
+        if (settings.logPath.isEmpty())
+            settings.logPath = tempFile("benchmark", ".lgf").getPath();
+        if (settings.mdfPath.isEmpty())
+            settings.mdfPath = writeMetaData(0, 0).getPath();
+
+        File file = tempFile("benchmark", ".conf");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write("Start Simulator Configuration File\n" +
+                     "Version/Phase: 4.0\n" +
+                     "File Path: " + settings.mdfPath + "\n" +
+                     "Processor quantum number: 4\n" +
+                     "CPU scheduling code: " + settings.scheduleCode + "\n" +
+                     "Processor cycle time {msec}: 5\n" +
+                     "Monitor display time {msec}: 22\n" +
+                     "Hard drive cycle time {msec}: 150\n" +
+                     "Projector cycle time {msec}: 250\n" +
+                     "Keyboard cycle time {msec}: 60\n" +
+                     "Memory cycle time {msec}: 10\n" +
+                     "Scanner cycle time {msec}: 15\n" +
+                     "System memory {kbytes}: " + settings.memoryKB + "\n" +
+                     "Memory block size {bits}: " + settings.blockSize + "\n" +
+                     "Projector quantity: " + settings.projectorQuantity + "\n" +
+                     "Hard drive quantity: " + settings.hardDriveQuantity + "\n" +
+                     "Log: Log to File\n" +
+                     "Log File Path: " + settings.logPath + "\n" +
+                     "Simulation mode: " + settings.clockMode + "\n" +
+                     "IO executor: " + settings.ioMode + "\n" +
+                     "Log mode: " + settings.logMode + "\n" +
+                     "End Simulator Configuration File\n");
+        writer.close();
+
+        return file;
+    }
+
+    /**
+     * \brief Writes a meta data file of randomly chosen operations.
+     * \details Uses the generator of the parser benchmark, so both
+     *          benchmark the same files.
+     * \param numOperations Total number of operations.
+     * \param operationsPerProcess Operations in each application, or 0
+     *        for a file with no applications at all.
+     * \return The temporary file, deleted when the JVM exits.
+     */
+    static File writeMetaData(int numOperations, int operationsPerProcess) throws IOException
+    {
+        File file;
+        try {
+            file = (File)GENERATE_META_DATA.invokeExact(numOperations, operationsPerProcess);
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * \brief Creates a simulation context, which initializes every module
+     *        from the configuration file.
+     */
+    static Object newSimulation(File config)
+    {
+        try {
+            return (Object)NEW_SIMULATION.invokeExact(config.getPath());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Creates an operating system in a context, which loads its meta data.
+     */
+    static Object newOperatingSystem(Object context)
+    {
+        try {
+            return (Object)NEW_OPERATING_SYSTEM.invokeExact(context);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void readMetaData(Object os)
+    {
+        try {
+            READ_META_DATA.invokeExact(os);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Compiles a meta data file to a temporary compiled workload.
+     * \param context Where errors in the meta data are logged.
+     */
+    static File compileWorkload(Object context, File metaData) throws IOException
+    {
+        File file = tempFile("workload", ".mdb");
+
+        try {
+            COMPILE_WORKLOAD.invokeExact(context, metaData.getPath(), file.getPath());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+
+        return file;
+    }
+
+    /**
+     * \brief Points readMetaData() at a different meta data file.
+     */
+    static void setMetaDataPath(Object context, String path)
+    {
+        try {
+            SET_META_DATA_PATH.invokeExact(context, path);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Creates a scheduler and sets it up for a simulation.
+     * \param name A CPU scheduling code.
+     */
+    static Object newScheduler(Object context, String name)
+    {
+        try {
+            return (Object)NEW_SCHEDULER.invokeExact(context, name);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Creates a PS or SJF scheduler on a PriorityQueue, the ready
+     *        queue they used before the ready heap.
+     */
+    static Object newPriorityQueueScheduler(Object context, String name)
+    {
+        try {
+            return (Object)NEW_PRIORITY_QUEUE_SCHEDULER.invokeExact(context, name);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void admit(Object scheduler, Object pcb)
+    {
+        try {
+            ADMIT.invokeExact(scheduler, pcb);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object pickNext(Object scheduler)
+    {
+        try {
+            return (Object)PICK_NEXT.invokeExact(scheduler);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Creates a new process with the given operation counts.
+     */
+    static Object newProcess(Object context, int processID, int numIO, int numOperations)
+    {
+        try {
+            return (Object)NEW_PROCESS.invokeExact(context, processID, numIO, numOperations);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Creates an operation.
+     * \param type Name of an OperationType constant.
+     * \param device Name of a Device constant.
+     */
+    static Object newOperation(String type, String device, int numCycles)
+    {
+        try {
+            return (Object)NEW_OPERATION.invokeExact(type, device, numCycles);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Logs a process event, the most common kind of log line.
+     */
+    static void logEvent(Object context, int processID)
+    {
+        try {
+            LOG_EVENT.invokeExact(context, processID);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Writes out everything that has been logged and closes the log.
+     */
+    static void closeLog(Object context)
+    {
+        try {
+            CLOSE_LOG.invokeExact(context);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long allocate(Object context, int processID)
+    {
+        try {
+            return (long)ALLOCATE.invokeExact(context, processID);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void free(Object context, int processID, long address)
+    {
+        try {
+            FREE.invokeExact(context, processID, address);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int acquireResource(Object context, Object op)
+    {
+        try {
+            return (int)ACQUIRE_RESOURCE.invokeExact(context, op);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void releaseResource(Object context, Object op, int device)
+    {
+        try {
+            RELEASE_RESOURCE.invokeExact(context, op, device);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * \brief Loads the simulator's entry point for the benchmarks.
+     */
+    private static Class<?> bridgeClass()
+    {
+        try {
+            return Class.forName("BenchmarkBridge", true, Simulator.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Simulator class BenchmarkBridge not found, " +
+                                            "the phase 4 sources are not on the classpath", e);
+        }
+    }
+
+    /**
+     * \brief Finds one of the entry point's methods.
+     * \details Every handle is looked up when this class is loaded, so
+     *          a method that does not match fails the first benchmark
+     *          before it measures anything, naming the method.
+     */
+    private static MethodHandle bridge(String name, Class<?> returnType, Class<?>... parameters)
+    {
+        try {
+            return MethodHandles.publicLookup().findStatic(BRIDGE, name,
+                                                           MethodType.methodType(returnType,
+                                                                                 parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Simulator method BenchmarkBridge." + name + " " +
+                                            MethodType.methodType(returnType, parameters) +
+                                            " not found", e);
+        }
+    }
+
+    private static File tempFile(String prefix, String suffix) throws IOException
+    {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static RuntimeException rethrow(Throwable t)
+    {
+        if (t instanceof RuntimeException)
+            return (RuntimeException)t;
+        if (t instanceof Error)
+            throw (Error)t;
+        return new IllegalStateException(t);
+    }
+}
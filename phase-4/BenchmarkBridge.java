@@ -0,0 +1,225 @@
+/**
+ * Entry point for the JMH benchmarks in phase-4-bench.
+ * The simulator lives in the default package, which no named package
+ * can import, so the benchmarks reach it through reflection. Everything
+ * they need is here, as public methods that only take and return
+ * objects, strings and primitives. This class calls the simulator
+ * directly, so a rename in the simulator breaks the build of this file.
+ * The benchmarks only look up the methods of this class, all at once.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+public final class BenchmarkBridge
+{
+    private BenchmarkBridge()
+    {
+    }
+
+    /**
+     * \brief Creates a simulation context from a configuration file.
+     */
+    public static Object newSimulation(String configFilePath)
+    {
+        return new SimulationContext(configFilePath);
+    }
+
+    /**
+     * \brief Writes a meta data file of randomly chosen operations.
+     * \details The same files the parser benchmark generates.
+     */
+    public static File generateMetaData(int numOperations, int operationsPerProcess)
+        throws IOException
+    {
+        return ParserBenchmark.generateMetaData(numOperations, operationsPerProcess);
+    }
+
+    /**
+     * \brief Creates an operating system in a context, which loads its meta data.
+     */
+    public static Object newOperatingSystem(Object context)
+    {
+        return new OperatingSystem((SimulationContext)context);
+    }
+
+    public static void readMetaData(Object os)
+    {
+        ((OperatingSystem)os).readMetaData();
+    }
+
+    /**
+     * \brief Compiles a meta data file to a workload file.
+     */
+    public static void compileWorkload(Object context, String mdfPath, String outPath)
+    {
+        WorkloadCompiler.compile((SimulationContext)context, mdfPath, outPath);
+    }
+
+    /**
+     * \brief Points readMetaData() at a different meta data file.
+     */
+    public static void setMetaDataPath(Object context, String mdfPath)
+    {
+        ((SimulationContext)context).config.mdfPath = mdfPath;
+    }
+
+    /**
+     * \brief Creates a scheduler and sets it up for a simulation.
+     * \param name A CPU scheduling code.
+     */
+    public static Object newScheduler(Object context, String name)
+    {
+        Scheduler scheduler = Scheduler.forName(name);
+        scheduler.init((SimulationContext)context);
+        return scheduler;
+    }
+
+    /**
+     * \brief Creates a scheduler that keeps its ready processes in a
+     *        PriorityQueue, the way PS and SJF did before the ready heap.
+     * \details Lets the benchmarks compare the heap against it.
+     * \param name Either ps or sjf.
+     */
+    public static Object newPriorityQueueScheduler(Object context, String name)
+    {
+        Comparator<ProcessControlBlock> comparator;
+        if (name.equals("ps"))
+        {
+            comparator = new Comparator<ProcessControlBlock>()
+            {
+                public int compare(ProcessControlBlock a, ProcessControlBlock b)
+                {
+                    return Integer.compare(b.getNumIO(), a.getNumIO());
+                }
+            };
+        }
+        else if (name.equals("sjf"))
+        {
+            comparator = new Comparator<ProcessControlBlock>()
+            {
+                public int compare(ProcessControlBlock a, ProcessControlBlock b)
+                {
+                    return Integer.compare(a.getNumOperations(), b.getNumOperations());
+                }
+            };
+        }
+        else
+            throw new IllegalArgumentException("No priority queue scheduler for " + name);
+
+        Scheduler scheduler = new PriorityQueueScheduler(name, comparator);
+        scheduler.init((SimulationContext)context);
+        return scheduler;
+    }
+
+    public static void admit(Object scheduler, Object pcb)
+    {
+        ((Scheduler)scheduler).admit((ProcessControlBlock)pcb);
+    }
+
+    public static Object pickNext(Object scheduler)
+    {
+        return ((Scheduler)scheduler).pickNext();
+    }
+
+    /**
+     * \brief Creates a new process with the given operation counts.
+     */
+    public static Object newProcess(Object context, int processID, int numIO, int numOperations)
+    {
+        ProcessControlBlock pcb = new ProcessControlBlock((SimulationContext)context, processID,
+                                                          State.NEW);
+        for (int i = 0; i < numIO; i++)
+            pcb.incrementNumIO();
+        for (int i = 0; i < numOperations; i++)
+            pcb.incrementNumOperations();
+        return pcb;
+    }
+
+    /**
+     * \brief Creates an operation.
+     * \param type Name of an OperationType constant.
+     * \param device Name of a Device constant.
+     */
+    public static Object newOperation(String type, String device, int numCycles)
+    {
+        return new Operation(OperationType.valueOf(type), Device.valueOf(device), numCycles);
+    }
+
+    /**
+     * \brief Logs a process event, the most common kind of log line.
+     */
+    public static void logEvent(Object context, int processID)
+    {
+        ((SimulationContext)context).logger.log(LogEvent.PREPARING, processID);
+    }
+
+    /**
+     * \brief Writes out everything that has been logged and closes the log.
+     */
+    public static void closeLog(Object context)
+    {
+        ((SimulationContext)context).logger.writeBufferToFile();
+    }
+
+    public static long allocate(Object context, int processID)
+    {
+        return ((SimulationContext)context).memory.allocate(processID);
+    }
+
+    public static void free(Object context, int processID, long address)
+    {
+        ((SimulationContext)context).memory.free(processID, address);
+    }
+
+    public static int acquireResource(Object context, Object op)
+    {
+        return ((SimulationContext)context).resources.acquireResource((Operation)op);
+    }
+
+    public static void releaseResource(Object context, Object op, int device)
+    {
+        ((SimulationContext)context).resources.releaseResource((Operation)op, device);
+    }
+
+    /**
+     * Scheduler with its ready processes in a PriorityQueue.
+     */
+    private static final class PriorityQueueScheduler implements Scheduler
+    {
+        private final String name;
+        private final PriorityQueue<ProcessControlBlock> readyQueue;
+
+        PriorityQueueScheduler(String name, Comparator<ProcessControlBlock> comparator)
+        {
+            this.name = name;
+            readyQueue = new PriorityQueue<ProcessControlBlock>(100, comparator);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void init(SimulationContext context)
+        {
+        }
+
+        public void admit(ProcessControlBlock pcb)
+        {
+            readyQueue.add(pcb);
+        }
+
+        public ProcessControlBlock pickNext()
+        {
+            return readyQueue.poll();
+        }
+
+        public int size()
+        {
+            return readyQueue.size();
+        }
+    }
+}
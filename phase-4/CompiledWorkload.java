@@ -0,0 +1,404 @@
+/**
+ * Compiled, binary form of a meta data file.
+ * Parsing the text meta data is most of the time it takes to start a
+ * large workload, and the same workload is often run under many
+ * configurations. A compiled workload is parsed once by WorkloadCompiler,
+ * and loading it is a memory-mapped read of arrays that are already in
+ * the form the operation queues keep them in.
+ *
+ * The file is little endian and laid out as follows:
+ *
+ *     header       magic "MDB1", version, number of processes,
+ *                  dictionary size, number of operations (32 bytes)
+ *     dictionary   for each kind of operation, its type letter, the
+ *                  length of its name and the name, padded to 4 bytes
+ *     offsets      for each process, the index of its first operation,
+ *                  then the total number of operations
+ *     IO counts    for each process, how many IO operations it has
+ *     cycles       for each operation, its number of cycles
+ *     kinds        for each operation, its index in the dictionary
+ *
+ * The dictionary keeps the file independent of the order of the enums,
+ * and is turned into a lookup table once when the file is opened.
+ */
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+class CompiledWorkload
+{
+    static final int MAGIC = 0x3142444D;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int MAX_DICTIONARY_SIZE = 256;
+
+    private final SimulationContext context;
+    private final String filePath;
+    private final MappedByteBuffer buffer;
+    private final IntBuffer cycleView;
+    private final int numProcesses,
+                      numOperations,
+                      offsetsPosition,
+                      ioCountsPosition,
+                      kindsPosition;
+    private final int[] kindCodes;
+
+    /**
+     * \brief Maps a compiled workload and checks its header and dictionary.
+     * \param context The simulation the workload is loaded into.
+     * \param filePath Path to the compiled workload.
+     */
+    CompiledWorkload(SimulationContext context, String filePath)
+    {
+        this.context = context;
+        this.filePath = filePath;
+        this.buffer = map(filePath);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            error("not a compiled workload");
+        if (buffer.getInt(4) != VERSION)
+            error("version " + buffer.getInt(4) + " is not supported");
+
+        numProcesses = buffer.getInt(8);
+        int dictionarySize = buffer.getInt(12);
+        long totalOperations = buffer.getLong(16);
+        if (numProcesses < 0 || dictionarySize < 0 || dictionarySize > MAX_DICTIONARY_SIZE ||
+            totalOperations < 0 || totalOperations > Integer.MAX_VALUE)
+            error("header is corrupt");
+        numOperations = (int)totalOperations;
+
+        kindCodes = new int[MAX_DICTIONARY_SIZE];
+        Arrays.fill(kindCodes, -1);
+        int position = readDictionary(dictionarySize);
+
+        offsetsPosition = position;
+        ioCountsPosition = offsetsPosition + 4 * (numProcesses + 1);
+        int cyclesPosition = ioCountsPosition + 4 * numProcesses;
+        kindsPosition = cyclesPosition + 4 * numOperations;
+        if ((long)kindsPosition + numOperations != buffer.limit() ||
+            buffer.getInt(offsetsPosition) != 0 ||
+            buffer.getInt(offsetsPosition + 4 * numProcesses) != numOperations)
+            error("file is truncated or corrupt");
+
+        cycleView = buffer.slice(cyclesPosition, 4 * numOperations)
+                          .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * \brief Checks if a file is a compiled workload.
+     * \details Only the magic number at the start is looked at.
+     */
+    static boolean isCompiled(String filePath)
+    {
+        byte[] start = new byte[4];
+        try {
+            FileInputStream file = new FileInputStream(filePath);
+            int length = file.read(start);
+            file.close();
+            return length == 4 &&
+                   ByteBuffer.wrap(start).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * \brief Gives the number of processes in the workload.
+     */
+    public int getNumProcesses()
+    {
+        return numProcesses;
+    }
+
+    /**
+     * \brief Gives the total number of operations in the workload.
+     */
+    public int getNumOperations()
+    {
+        return numOperations;
+    }
+
+    /**
+     * \brief Creates a process with its operations.
+     * \details The cycles are copied straight out of the mapped file,
+     *          and the kinds are looked up in the dictionary's table.
+     * \param index Index of the process, its ID is one more.
+     */
+    public ProcessControlBlock loadProcess(int index)
+    {
+        int first = buffer.getInt(offsetsPosition + 4 * index);
+        int last = buffer.getInt(offsetsPosition + 4 * (index + 1));
+        int numIO = buffer.getInt(ioCountsPosition + 4 * index);
+        if (first < 0 || last < first || last > numOperations || numIO < 0)
+            error("process " + (index + 1) + " is corrupt");
+
+        int count = last - first;
+        int[] cycles = new int[count];
+        byte[] codes = new byte[count];
+        cycleView.get(first, cycles);
+        buffer.get(kindsPosition + first, codes);
+
+        for (int i = 0; i < count; i++)
+        {
+            int code = kindCodes[codes[i] & 0xFF];
+            if (code < 0)
+                error("process " + (index + 1) + " has an operation missing from the dictionary");
+            codes[i] = (byte)code;
+        }
+
+        ProcessControlBlock pcb = new ProcessControlBlock(context, index + 1, State.NEW);
+        pcb.loadOperations(new OperationQueue(codes, cycles), numIO);
+        return pcb;
+    }
+
+    /**
+     * \brief Reads the dictionary into the lookup table.
+     * \return The position right after the dictionary and its padding.
+     */
+    private int readDictionary(int dictionarySize)
+    {
+        int position = HEADER_SIZE;
+
+        try {
+            for (int i = 0; i < dictionarySize; i++)
+            {
+                OperationType type = OperationType.fromLetter(buffer.get(position));
+                int length = buffer.get(position + 1) & 0xFF;
+                byte[] name = new byte[length];
+                buffer.get(position + 2, name);
+                position += 2 + length;
+
+                Device device = Device.fromLabel(new String(name, "US-ASCII"));
+                if (!isLoadable(type, device))
+                    error("dictionary entry " + i + " is not a valid operation");
+                kindCodes[i] = OperationQueue.encode(type, device);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            error("dictionary is truncated");
+        } catch (IOException e) {
+            error("dictionary is corrupt");
+        }
+
+        return (position + 3) & ~3;
+    }
+
+    /**
+     * \brief Checks if an operation can be part of a process.
+     * \details System and application operations only mark where
+     *          processes start and end, which the offsets already do.
+     */
+    static boolean isLoadable(OperationType type, Device device)
+    {
+        return type != null && device != null &&
+               type != OperationType.SYSTEM && type != OperationType.APP &&
+               device != Device.BEGIN && device != Device.FINISH;
+    }
+
+    /**
+     * \brief Maps a whole file for reading.
+     */
+    private MappedByteBuffer map(String path)
+    {
+        MappedByteBuffer mapped = null;
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(path, "r");
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                error("file is too large to map");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.close();
+        } catch (IOException e) {
+            context.logger.logError("Compiled workload " + path + " could not be read");
+        }
+
+        return mapped;
+    }
+
+    /**
+     * \brief Logs an error about the compiled workload.
+     */
+    private void error(String msg)
+    {
+        context.logger.logError("Compiled workload " + filePath + ": " + msg);
+    }
+
+    /**
+     * Collects the processes of a workload and writes them out compiled.
+     * Processes are added one at a time, and their operations are kept in
+     * the same packed arrays the file has until it is written.
+     */
+    static class Builder
+    {
+        private final byte[] dictionary;
+        private final int[] kindOfCode;
+        private int dictionarySize;
+        private int[] offsets,
+                      ioCounts,
+                      cycles;
+        private byte[] kinds;
+        private int numProcesses,
+                    numOperations,
+                    processStart,
+                    processIO;
+        private boolean isInProcess;
+
+        Builder()
+        {
+            dictionary = new byte[MAX_DICTIONARY_SIZE];
+            kindOfCode = new int[MAX_DICTIONARY_SIZE];
+            Arrays.fill(kindOfCode, -1);
+            dictionarySize = 0;
+            offsets = new int[64];
+            ioCounts = new int[64];
+            cycles = new int[1024];
+            kinds = new byte[1024];
+            numProcesses = 0;
+            numOperations = 0;
+            isInProcess = false;
+        }
+
+        /**
+         * \brief Starts a new process.
+         */
+        public void beginProcess()
+        {
+            processStart = numOperations;
+            processIO = 0;
+            isInProcess = true;
+        }
+
+        /**
+         * \brief Adds an operation to the process that was started last.
+         */
+        public void addOperation(OperationType type, Device device, int numCycles)
+        {
+            int code = OperationQueue.encode(type, device) & 0xFF;
+            if (kindOfCode[code] < 0)
+            {
+                dictionary[dictionarySize] = (byte)code;
+                kindOfCode[code] = dictionarySize++;
+            }
+
+            if (numOperations == cycles.length)
+            {
+                if (numOperations == Integer.MAX_VALUE)
+                    throw new SimulationException("Workload has too many operations to compile");
+                int capacity = (int)Math.min(Integer.MAX_VALUE, 2L * numOperations);
+                cycles = Arrays.copyOf(cycles, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+
+            cycles[numOperations] = numCycles;
+            kinds[numOperations] = (byte)kindOfCode[code];
+            numOperations++;
+            if (type == OperationType.INPUT || type == OperationType.OUTPUT)
+                processIO++;
+        }
+
+        /**
+         * \brief Finishes the process that was started last.
+         */
+        public void endProcess()
+        {
+            if (numProcesses + 1 >= offsets.length)
+            {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                ioCounts = Arrays.copyOf(ioCounts, ioCounts.length * 2);
+            }
+
+            offsets[numProcesses] = processStart;
+            ioCounts[numProcesses] = processIO;
+            numProcesses++;
+            isInProcess = false;
+        }
+
+        /**
+         * \brief Checks if a process has been started and not finished.
+         */
+        public boolean isInProcess()
+        {
+            return isInProcess;
+        }
+
+        public int getNumProcesses()
+        {
+            return numProcesses;
+        }
+
+        public int getNumOperations()
+        {
+            return numOperations;
+        }
+
+        /**
+         * \brief Writes the compiled workload.
+         * \details Operations of a process that was never finished are
+         *          left out.
+         * \return The size of the file in bytes.
+         */
+        public long write(String path) throws IOException
+        {
+            int total = numProcesses == 0 ? 0 : (isInProcess ? processStart : numOperations);
+            offsets[numProcesses] = total;
+
+            int dictionaryBytes = 0;
+            for (int i = 0; i < dictionarySize; i++)
+                dictionaryBytes += 2 + deviceOf(dictionary[i]).label.length();
+            dictionaryBytes = (dictionaryBytes + 3) & ~3;
+
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + dictionaryBytes +
+                                                  4 * (2 * numProcesses + 1))
+                                        .order(ByteOrder.LITTLE_ENDIAN);
+            head.putInt(MAGIC);
+            head.putInt(VERSION);
+            head.putInt(numProcesses);
+            head.putInt(dictionarySize);
+            head.putLong(total);
+            head.putLong(0);
+
+            for (int i = 0; i < dictionarySize; i++)
+            {
+                String label = deviceOf(dictionary[i]).label;
+                head.put((byte)typeOf(dictionary[i]).letter);
+                head.put((byte)label.length());
+                head.put(label.getBytes("US-ASCII"));
+            }
+            head.position(HEADER_SIZE + dictionaryBytes);
+            for (int i = 0; i <= numProcesses; i++)
+                head.putInt(offsets[i]);
+            for (int i = 0; i < numProcesses; i++)
+                head.putInt(ioCounts[i]);
+            head.flip();
+
+            ByteBuffer cycleBytes = ByteBuffer.allocate(4 * total).order(ByteOrder.LITTLE_ENDIAN);
+            cycleBytes.asIntBuffer().put(cycles, 0, total);
+
+            FileOutputStream file = new FileOutputStream(path);
+            FileChannel channel = file.getChannel();
+            channel.write(new ByteBuffer[] { head, cycleBytes, ByteBuffer.wrap(kinds, 0, total) });
+            long size = channel.size();
+            file.close();
+            return size;
+        }
+
+        private static OperationType typeOf(byte code)
+        {
+            return OperationType.values()[(code & 0xFF) >> 4];
+        }
+
+        private static Device deviceOf(byte code)
+        {
+            return Device.values()[code & 0x0F];
+        }
+    }
+}
@@ -5,9 +5,11 @@
  *
  * This class cannot utilize any of the Logger functions as this
  * is the first class that is initialized in the course of execution.
- * Instead of handling errors with the logError() method, we simply write
- * to stderr. I plan on fixing that soon, but for now it handles all errors
- * so it is good enough.
+ * Instead of handling errors with the logError() method, errors are thrown
+ * with their message, which the command line driver writes to stderr.
+ *
+ * Each simulation has its own configuration, so settings can be changed
+ * in code for one run without affecting any other.
  */
 
 import java.util.Scanner;
@@ -23,82 +25,236 @@ enum LogType
 {
     MONITOR,
     FILE,
-    BOTH
+    BOTH,
+    NONE
 }
 
 /**
- * \brief Enumeration to represent different scheduling algorithms
+ * \brief Enumeration to represent how simulated time advances.
  */
-enum ScheduleType
+enum ClockMode
 {
-    FCFS,
-    SJF,
-    PS
+    REAL,
+    VIRTUAL
+}
+
+/**
+ * \brief Enumeration to represent whether logging blocks the caller.
+ */
+enum LogMode
+{
+    SYNC,
+    ASYNC
+}
+
+/**
+ * \brief Enumeration to represent page replacement policies.
+ * \details NONE turns paging off.
+ */
+enum ReplacementType
+{
+    NONE,
+    FIFO,
+    LRU,
+    CLOCK
+}
+
+/**
+ * \brief Enumeration to represent disk scheduling policies.
+ * \details NONE turns the hard drive request queues off.
+ */
+enum DiskSchedulingType
+{
+    NONE,
+    FIFO,
+    SSTF,
+    SCAN,
+    CLOOK
+}
+
+/**
+ * \brief Enumeration to represent the format of the metrics report.
+ * \details NONE only logs the summary.
+ */
+enum MetricsReport
+{
+    NONE,
+    JSON,
+    CSV
+}
+
+/**
+ * \brief Enumeration to represent how IO operations are executed.
+ */
+enum IOMode
+{
+    POOL,
+    VIRTUAL,
+    CALLER
 }
 
 
 public class Configuration
 {
-    public static int processorTime,
-                      processorQuantumNum,
-                      monitorTime,
-                      hardDriveTime,
-                      keyboardTime,
-                      scannerTime,
-                      projectorTime,
-                      memoryTime,
-                      totalSystemMemoryKB,
-                      memoryBlockSize,
-                      projectorQuantity,
-                      hardDriveQuantity;
-    public static String version,
-                         mdfPath,
-                         logFilePath;
-    public static LogType logType;
-    public static ScheduleType scheduleType;
+    public int processorTime,
+               processorQuantumNum,
+               monitorTime,
+               hardDriveTime,
+               keyboardTime,
+               scannerTime,
+               projectorTime,
+               memoryTime,
+               totalSystemMemoryKB,
+               memoryBlockSize,
+               projectorQuantity,
+               hardDriveQuantity,
+               processorCores,
+               pageFrames,
+               tlbEntries,
+               diskCylinders,
+               seekTime,
+               ioPoolSize,
+               logBufferSize,
+               logFileBufferKB,
+               logFlushInterval,
+               feedbackLevels,
+               boostInterval,
+               lookAhead,
+               admissionLimit;
+    public String version,
+                  mdfPath,
+                  logFilePath,
+                  metricsFilePath,
+                  scheduleCode;
+    public LogType logType;
+    public ClockMode clockMode;
+    public IOMode ioMode;
+    public LogMode logMode;
+    public ReplacementType pageReplacement;
+    public DiskSchedulingType diskScheduling;
+    public MetricsReport metricsReport;
+    private int[] cycleTimes;
 
     /**
-     * \brief Initializes the configuration settings and reads the config file.
-     * \details Since there is no constructor for this class, this method
-     *          must be called before using any of its functionalities.
-     * \param configFilePath The file path for the configuration file.
+     * \brief Creates a configuration with every setting at its default.
+     * \details The settings a configuration file must have are left at
+     *          zero, apart from the schedule, which is FCFS, and the log,
+     *          which goes to the monitor. Used to build a configuration
+     *          in code instead of reading one.
      */
-    public static void init(String configFilePath)
+    Configuration()
     {
         version = new String();
         mdfPath = new String();
         logFilePath = new String();
+        scheduleCode = "fifo";
+        logType = LogType.MONITOR;
+        clockMode = ClockMode.REAL;
+        ioMode = IOMode.POOL;
+        processorCores = 1;
+        pageReplacement = ReplacementType.NONE;
+        pageFrames = 256;
+        tlbEntries = 16;
+        diskScheduling = DiskSchedulingType.NONE;
+        diskCylinders = 200;
+        seekTime = 100;
+        ioPoolSize = 0;
+        logMode = LogMode.SYNC;
+        logBufferSize = 65536;
+        logFileBufferKB = 64;
+        logFlushInterval = 1000;
+        feedbackLevels = 3;
+        boostInterval = 1000;
+        lookAhead = 0;
+        admissionLimit = 0;
+        metricsReport = MetricsReport.NONE;
+        metricsFilePath = new String();
+        updateCycleTimes();
+    }
+
+    /**
+     * \brief Copies another configuration.
+     * \details Lets several simulations start from the same settings
+     *          and change them independently.
+     */
+    Configuration(Configuration other)
+    {
+        processorTime = other.processorTime;
+        processorQuantumNum = other.processorQuantumNum;
+        monitorTime = other.monitorTime;
+        hardDriveTime = other.hardDriveTime;
+        keyboardTime = other.keyboardTime;
+        scannerTime = other.scannerTime;
+        projectorTime = other.projectorTime;
+        memoryTime = other.memoryTime;
+        totalSystemMemoryKB = other.totalSystemMemoryKB;
+        memoryBlockSize = other.memoryBlockSize;
+        projectorQuantity = other.projectorQuantity;
+        hardDriveQuantity = other.hardDriveQuantity;
+        processorCores = other.processorCores;
+        pageFrames = other.pageFrames;
+        tlbEntries = other.tlbEntries;
+        diskCylinders = other.diskCylinders;
+        seekTime = other.seekTime;
+        ioPoolSize = other.ioPoolSize;
+        logBufferSize = other.logBufferSize;
+        logFileBufferKB = other.logFileBufferKB;
+        logFlushInterval = other.logFlushInterval;
+        feedbackLevels = other.feedbackLevels;
+        boostInterval = other.boostInterval;
+        lookAhead = other.lookAhead;
+        admissionLimit = other.admissionLimit;
+        version = other.version;
+        mdfPath = other.mdfPath;
+        logFilePath = other.logFilePath;
+        logType = other.logType;
+        scheduleCode = other.scheduleCode;
+        clockMode = other.clockMode;
+        ioMode = other.ioMode;
+        logMode = other.logMode;
+        pageReplacement = other.pageReplacement;
+        diskScheduling = other.diskScheduling;
+        metricsReport = other.metricsReport;
+        metricsFilePath = other.metricsFilePath;
+        updateCycleTimes();
+    }
+
+    /**
+     * \brief Reads the configuration settings from the config file.
+     * \details Any optional setting the file leaves out keeps its default.
+     * \param configFilePath The file path for the configuration file.
+     */
+    Configuration(String configFilePath)
+    {
+        this();
         readConfigFile(configFilePath);
+        updateCycleTimes();
     }
 
     /**
      * \brief Reads the configuration file and sets configuration
      *        settings.
-     * \details Called in class's initialization method.
+     * \details Called by the constructor.
      * \param A string containing the configuration file path.
      */
-    private static void readConfigFile(String configFilePath)
+    private void readConfigFile(String configFilePath)
     {
         FileInputStream configFile = null;
         try {
             configFile = new FileInputStream(configFilePath);
         } catch (FileNotFoundException e) {
-            System.err.println("Configuration file not found\n" +
-                               "Please enter a valid file path");
-            System.exit(1);
+            throw new SimulationException("Configuration file not found\n" +
+                                          "Please enter a valid file path");
         }
         Scanner configScan = new Scanner(configFile);
 
         if (!configScan.nextLine().contains("Start"))
-        {
-            System.err.println("Configuration file does not contain start prompt");
-            System.exit(1);
-        }
+            throw new SimulationException("Configuration file does not contain start prompt");
 
         version = extractOption(configScan);
         mdfPath = extractOption(configScan);
         processorQuantumNum = Integer.parseInt(extractOption(configScan));
-        String scheduleTypeString = extractOption(configScan);
+        String scheduleCodeString = extractOption(configScan);
         processorTime = Integer.parseInt(extractOption(configScan));
         monitorTime = Integer.parseInt(extractOption(configScan));
         hardDriveTime = Integer.parseInt(extractOption(configScan));
@@ -112,23 +268,14 @@ public class Configuration
         hardDriveQuantity = Integer.parseInt(extractOption(configScan));
         String logTypeString = extractOption(configScan);
         logFilePath = extractOption(configScan);
+        readOptionalSettings(configScan);
 
-        switch (scheduleTypeString.toLowerCase())
-        {
-            case "fifo":
-                scheduleType = ScheduleType.FCFS;
-                break;
-            case "sjf":
-                scheduleType = ScheduleType.SJF;
-                break;
-            case "ps":
-                scheduleType = ScheduleType.PS;
-                break;
-            default:
-                System.err.println("Schedule type is not a valid option\n" +
-                                   "Exiting with return code 1");
-                System.exit(1);
-        }
+        if (metricsReport != MetricsReport.NONE && metricsFilePath.isEmpty())
+            throw new SimulationException("Metrics report needs a metrics file path\n" +
+                                          "Exiting with return code 1");
+
+        scheduleCode = parseScheduleCode(scheduleCodeString);
+        checkScheduler();
 
         switch (logTypeString.toLowerCase())
         {
@@ -142,21 +289,51 @@ public class Configuration
                 logType = LogType.FILE;
                 break;
             default:
-                System.err.println("Log type is not a valid option\n" +
-                                   "Exiting with return code 1");
-                System.exit(1);
+                throw new SimulationException("Log type is not a valid option\n" +
+                                              "Exiting with return code 1");
         }
 
         try {
             configScan.close();
             configFile.close();
         } catch (IOException e) {
-            System.err.println("IO failed on file " + configFilePath);
-            System.exit(1);
+            throw new SimulationException("IO failed on file " + configFilePath);
         }
     }
 
 
+    /**
+     * \brief Parses the code of a CPU scheduling algorithm.
+     * \details The code has to name one of the schedulers on the class
+     *          path. See Scheduler.
+     * \param value The CPU scheduling code, in any case.
+     * \return The code, in lower case.
+     */
+    static String parseScheduleCode(String value)
+    {
+        return Scheduler.forName(value).getName();
+    }
+
+    /**
+     * \brief Checks the other settings work with the scheduling algorithm.
+     * \details Round robin, for one, would never run anything with a
+     *          quantum of zero.
+     */
+    public void checkScheduler()
+    {
+        Scheduler.forName(scheduleCode).checkSettings(this);
+    }
+
+    /**
+     * \brief Gives the quantum of a level of the multilevel feedback queue.
+     * \details The quantum doubles with every level down, so processes
+     *          that keep using up their quantum run for longer, less often.
+     */
+    public int getLevelQuantum(int level)
+    {
+        return (int)Math.min(Integer.MAX_VALUE, (long)processorQuantumNum << Math.min(level, 32));
+    }
+
     /**
      * \brief Helper function to parse configuration line
      *        and return the relevant data;
@@ -167,49 +344,262 @@ public class Configuration
      * \param configScan The Scanner that is attached to the config file.
      * \returns A string containing the valid option data.
      */
-    private static String extractOption(Scanner configScanner)
+    private String extractOption(Scanner configScanner)
     {
         String option = null;
 
         try {
             option = configScanner.nextLine().split(":")[1].trim();
         } catch (Exception e) {
-            System.err.println("Missing required configuration data.\n" +
-                               "Please check the configuration file.");
-            System.exit(1);
+            throw new SimulationException("Missing required configuration data.\n" +
+                                          "Please check the configuration file.");
         }
 
         return option;
     }
 
     /**
-     * \brief Getter for the operation cycle time.
-     * \detials Uses a switch statement to modularize the method.
-     *          Otherwise, I'd need to override the method for as
-     *          many different cycle times there are.
+     * \brief Reads the optional settings that may follow the required ones.
+     * \details Every line up to the end prompt is expected to be in the
+     *          same "key: value" format as the required settings, apart
+     *          from blank lines, which are skipped. Unlike those, optional
+     *          settings may appear in any order, and any setting that is
+     *          left out keeps its default value.
+     * \param configScanner The Scanner that is attached to the config file.
      */
-    public static int getCycleTime(String opName)
+    private void readOptionalSettings(Scanner configScanner)
     {
-        switch (opName)
+        while (configScanner.hasNextLine())
         {
-            case "run":
-                return processorTime;
-            case "hard drive":
-                return hardDriveTime;
-            case "keyboard":
-                return keyboardTime;
-            case "monitor":
-                return monitorTime;
-            case "projector":
-                return projectorTime;
-            case "scanner":
-                return scannerTime;
-            case "allocate": case "block":
-                return memoryTime;
-            case "begin": case "finish":
-                return 0;
-            default:
-                return -1;
+            String line = configScanner.nextLine().trim();
+            if (line.startsWith("End Simulator Configuration File"))
+                return;
+            if (line.isEmpty())
+                continue;
+
+            String[] tokens = line.split(":");
+            if (tokens.length != 2)
+                throw new SimulationException("Malformed configuration line: " + line);
+
+            String key = tokens[0].trim().toLowerCase();
+            String value = tokens[1].trim().toLowerCase();
+
+            switch (key)
+            {
+                case "simulation mode":
+                    if (value.equals("real"))
+                        clockMode = ClockMode.REAL;
+                    else if (value.equals("virtual"))
+                        clockMode = ClockMode.VIRTUAL;
+                    else
+                        throw new SimulationException("Simulation mode is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "io executor":
+                    if (value.equals("pool"))
+                        ioMode = IOMode.POOL;
+                    else if (value.equals("virtual"))
+                        ioMode = IOMode.VIRTUAL;
+                    else if (value.equals("caller"))
+                        ioMode = IOMode.CALLER;
+                    else
+                        throw new SimulationException("IO executor is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "processor cores":
+                    processorCores = parseOptionalInt(tokens[0].trim(), value);
+                    if (processorCores < 1)
+                        throw new SimulationException("Processor cores must be at least one\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "page replacement":
+                    if (value.equals("none"))
+                        pageReplacement = ReplacementType.NONE;
+                    else if (value.equals("fifo"))
+                        pageReplacement = ReplacementType.FIFO;
+                    else if (value.equals("lru"))
+                        pageReplacement = ReplacementType.LRU;
+                    else if (value.equals("clock"))
+                        pageReplacement = ReplacementType.CLOCK;
+                    else
+                        throw new SimulationException("Page replacement is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "page frames":
+                    pageFrames = parseOptionalInt(tokens[0].trim(), value);
+                    if (pageFrames < 1)
+                        throw new SimulationException("Page frames must be at least one\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "tlb entries":
+                    tlbEntries = parseOptionalInt(tokens[0].trim(), value);
+                    if (tlbEntries < 0)
+                        throw new SimulationException("TLB entries cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "disk scheduling":
+                    if (value.equals("none"))
+                        diskScheduling = DiskSchedulingType.NONE;
+                    else if (value.equals("fifo"))
+                        diskScheduling = DiskSchedulingType.FIFO;
+                    else if (value.equals("sstf"))
+                        diskScheduling = DiskSchedulingType.SSTF;
+                    else if (value.equals("scan"))
+                        diskScheduling = DiskSchedulingType.SCAN;
+                    else if (value.equals("c-look") || value.equals("clook"))
+                        diskScheduling = DiskSchedulingType.CLOOK;
+                    else
+                        throw new SimulationException("Disk scheduling is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "disk cylinders":
+                    diskCylinders = parseOptionalInt(tokens[0].trim(), value);
+                    if (diskCylinders < 1)
+                        throw new SimulationException("Disk cylinders must be at least one\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "seek time {usec}":
+                    seekTime = parseOptionalInt(tokens[0].trim(), value);
+                    if (seekTime < 0)
+                        throw new SimulationException("Seek time cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "io pool size":
+                    ioPoolSize = parseOptionalInt(tokens[0].trim(), value);
+                    if (ioPoolSize < 0)
+                        throw new SimulationException("IO pool size cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "log mode":
+                    if (value.equals("sync"))
+                        logMode = LogMode.SYNC;
+                    else if (value.equals("async"))
+                        logMode = LogMode.ASYNC;
+                    else
+                        throw new SimulationException("Log mode is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "log buffer size":
+                    logBufferSize = parseOptionalInt(tokens[0].trim(), value);
+                    if (logBufferSize < 1)
+                        throw new SimulationException("Log buffer size must be at least one\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "log file buffer {kbytes}":
+                    logFileBufferKB = parseOptionalInt(tokens[0].trim(), value);
+                    if (logFileBufferKB < 0)
+                        throw new SimulationException("Log file buffer cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "log flush interval {msec}":
+                    logFlushInterval = parseOptionalInt(tokens[0].trim(), value);
+                    if (logFlushInterval < 0)
+                        throw new SimulationException("Log flush interval cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "feedback levels":
+                    feedbackLevels = parseOptionalInt(tokens[0].trim(), value);
+                    break;
+
+                case "priority boost interval {msec}":
+                    boostInterval = parseOptionalInt(tokens[0].trim(), value);
+                    break;
+
+                case "look-ahead window {processes}":
+                    lookAhead = parseOptionalInt(tokens[0].trim(), value);
+                    if (lookAhead < 0)
+                        throw new SimulationException("Look-ahead window cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "admission limit {processes}":
+                    admissionLimit = parseOptionalInt(tokens[0].trim(), value);
+                    if (admissionLimit < 0)
+                        throw new SimulationException("Admission limit cannot be negative\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "metrics report":
+                    if (value.equals("none"))
+                        metricsReport = MetricsReport.NONE;
+                    else if (value.equals("json"))
+                        metricsReport = MetricsReport.JSON;
+                    else if (value.equals("csv"))
+                        metricsReport = MetricsReport.CSV;
+                    else
+                        throw new SimulationException("Metrics report is not a valid option\n" +
+                                                      "Exiting with return code 1");
+                    break;
+
+                case "metrics file path":
+                    metricsFilePath = tokens[1].trim();
+                    break;
+
+                default:
+                    throw new SimulationException("Unknown configuration setting: " + tokens[0].trim());
+            }
+        }
+    }
+
+    /**
+     * \brief Parses the value of a numeric optional setting.
+     * \param key Name of the setting, used for the error message.
+     * \param value The string to parse.
+     * \return The parsed value.
+     */
+    private int parseOptionalInt(String key, String value)
+    {
+        int result = 0;
+
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new SimulationException(key + " must be a whole number\n" +
+                                          "Exiting with return code 1");
         }
+
+        return result;
+    }
+
+    /**
+     * \brief Fills the cycle time table from the current settings.
+     * \details Called once the config file has been read. Anything that
+     *          changes the times afterwards must call it again.
+     */
+    public void updateCycleTimes()
+    {
+        cycleTimes = new int[Device.values().length];
+        cycleTimes[Device.PROCESSOR.ordinal()] = processorTime;
+        cycleTimes[Device.HARD_DRIVE.ordinal()] = hardDriveTime;
+        cycleTimes[Device.KEYBOARD.ordinal()] = keyboardTime;
+        cycleTimes[Device.MONITOR.ordinal()] = monitorTime;
+        cycleTimes[Device.PROJECTOR.ordinal()] = projectorTime;
+        cycleTimes[Device.SCANNER.ordinal()] = scannerTime;
+        cycleTimes[Device.ALLOCATE.ordinal()] = memoryTime;
+        cycleTimes[Device.BLOCK.ordinal()] = memoryTime;
+    }
+
+    /**
+     * \brief Getter for the operation cycle time.
+     * \details Looks the time up in a table indexed by the device,
+     *          begin and finish operations take no time.
+     */
+    public int getCycleTime(Device device)
+    {
+        return cycleTimes[device.ordinal()];
     }
 }
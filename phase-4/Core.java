@@ -0,0 +1,330 @@
+/**
+ * A single simulated processor core.
+ * Each core has its own run queue and runs its own dispatcher.
+ * Processes come back to the core they last ran on once their IO is
+ * done. A core that runs out of work steals a process from the most
+ * loaded core rather than sit idle. The core's scheduler decides which
+ * of its ready processes runs next and when the running one is
+ * preempted.
+ *
+ * In real time the cores run on their own threads at the same time. In
+ * virtual time they take turns on the event queue, so the run stays
+ * deterministic.
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class Core implements Runnable
+{
+    private final int coreID;
+    private final OperatingSystem os;
+    private final SimulationContext context;
+    private final Scheduler scheduler;
+    private final boolean checksEveryOperation;
+    private final Queue<ProcessControlBlock> wokenQueue;
+    private Participant participant;
+    private volatile boolean isIdle;
+    private long busyTime;
+    private int numDispatched,
+                numStolen;
+
+    /**
+     * \brief Core constructor.
+     * \param coreID Number of the core, starting at 1.
+     * \param os The OS that owns the core.
+     * \param scheduler The core's own scheduler, which is set up here.
+     */
+    Core(int coreID, OperatingSystem os, Scheduler scheduler)
+    {
+        this.coreID = coreID;
+        this.os = os;
+        this.context = os.getContext();
+        this.scheduler = scheduler;
+        scheduler.init(context);
+        this.checksEveryOperation = scheduler.checksEveryOperation();
+        this.wokenQueue = new ConcurrentLinkedQueue<ProcessControlBlock>();
+        this.participant = null;
+        this.isIdle = false;
+        this.busyTime = 0;
+        this.numDispatched = 0;
+        this.numStolen = 0;
+    }
+
+    /**
+     * \brief Sets the core up to take turns with the other cores in virtual time.
+     * \details Must be called on every core before any of them starts.
+     */
+    public void joinVirtualTime()
+    {
+        participant = context.events.addParticipant();
+    }
+
+    /**
+     * \brief Dispatches processes until every process in the OS is done.
+     * \details A process runs until it finishes, blocks on IO, or is
+     *          preempted. While it waits on its device, the next ready
+     *          process gets the core. A preempted process goes straight
+     *          back to the scheduler, and processes that are done with
+     *          their IO are handed back to it before each dispatch. If
+     *          nothing is ready the core steals a process from another
+     *          core, and if there is nothing to steal it sits idle until
+     *          new work shows up. In caller mode the IO runs on the
+     *          core's thread once the process has left the core, and is
+     *          not counted as busy time.
+     */
+    public void run()
+    {
+        if (participant != null)
+            context.events.startTurn(participant);
+
+        while (os.hasProcessesLeft())
+        {
+            context.checkFailed();
+            moveWokenProcesses();
+
+            ProcessControlBlock currPCB = poll();
+            if (currPCB == null)
+                currPCB = os.steal(this);
+            if (currPCB == null)
+            {
+                waitForWork();
+                continue;
+            }
+
+            dispatch(currPCB);
+        }
+
+        if (participant != null)
+            context.events.leave();
+    }
+
+    /**
+     * \brief Runs a process until it gives up the core.
+     */
+    private void dispatch(ProcessControlBlock currPCB)
+    {
+        Logger logger = context.logger;
+        if (currPCB.getProcessState() == State.NEW)
+        {
+            logger.log(LogEvent.PREPARING, currPCB.getProcessID());
+            currPCB.setProcessState(State.READY);
+            logger.log(LogEvent.STARTING, currPCB.getProcessID(), null, coreID);
+            os.processStarted();
+        }
+        else
+            logger.log(LogEvent.RESUMING, currPCB.getProcessID(), null, coreID);
+
+        currPCB.setCore(this);
+        currPCB.setProcessState(State.RUNNING);
+        numDispatched++;
+        long dispatchTime = context.clock.nanoTime();
+        State nextState = currPCB.run(os);
+        busyTime += context.clock.nanoTime() - dispatchTime;
+
+        if (nextState == State.TERMINATED)
+        {
+            synchronized (this)
+            {
+                scheduler.onExit(currPCB);
+            }
+            logger.log(LogEvent.REMOVING, currPCB.getProcessID());
+            context.metrics.processFinished(currPCB);
+            os.processFinished();
+        }
+        else if (nextState == State.WAITING)
+        {
+            logger.log(LogEvent.WAITING, currPCB.getProcessID());
+            context.io.runDeferred();
+        }
+        else
+        {
+            logger.log(LogEvent.PREEMPTING, currPCB.getProcessID(), null,
+                       currPCB.getRemainingCycles());
+            synchronized (this)
+            {
+                scheduler.onPreempt(currPCB);
+            }
+        }
+    }
+
+    /**
+     * \brief Admits a new process to the core's scheduler.
+     */
+    public synchronized void add(ProcessControlBlock pcb)
+    {
+        scheduler.admit(pcb);
+    }
+
+    /**
+     * \brief Takes the process the core's scheduler picks to run next.
+     * \return The process, or null if none is ready.
+     */
+    private synchronized ProcessControlBlock poll()
+    {
+        return scheduler.pickNext();
+    }
+
+    /**
+     * \brief Gives how many cycles the running process may run for.
+     * \return The number of cycles, or 0 if there is no limit.
+     */
+    public synchronized int getTimeSlice(ProcessControlBlock pcb)
+    {
+        return scheduler.getTimeSlice(pcb);
+    }
+
+    /**
+     * \brief Checks if the scheduler wants to hear about every operation.
+     */
+    public boolean checksEveryOperation()
+    {
+        return checksEveryOperation;
+    }
+
+    /**
+     * \brief Checks if the running process should give up the core.
+     * \details Called by the running process on the core's own thread.
+     *          For a scheduler that checks after every operation,
+     *          processes that have just finished their IO are handed to
+     *          it first so they count too. Otherwise they are handed
+     *          over after a preempted process is put back, the same as
+     *          between any two dispatches.
+     * \param isSliceUsed True if the process has used up its time slice.
+     */
+    public boolean shouldPreempt(ProcessControlBlock pcb, boolean isSliceUsed)
+    {
+        if (checksEveryOperation)
+            moveWokenProcesses();
+        synchronized (this)
+        {
+            return scheduler.shouldPreempt(pcb, isSliceUsed);
+        }
+    }
+
+    /**
+     * \brief Tells the scheduler the running process is blocking on IO.
+     * \details Called before the IO starts, so the scheduler hears of it
+     *          before the process can wake up again.
+     */
+    public synchronized void block(ProcessControlBlock pcb)
+    {
+        scheduler.onBlock(pcb);
+    }
+
+    /**
+     * \brief Hands one of this core's processes to an idle core.
+     * \details The process that would have run next is given away, so
+     *          the scheduling order is kept as close as possible to what
+     *          a single shared queue would do. Processes that are done
+     *          with their IO but not yet handed back are taken if the
+     *          scheduler has none ready.
+     * \return The process, or null if there is nothing to give.
+     */
+    public synchronized ProcessControlBlock steal()
+    {
+        ProcessControlBlock pcb = scheduler.pickNext();
+        if (pcb == null)
+            pcb = wokenQueue.poll();
+        return pcb;
+    }
+
+    /**
+     * \brief Gives the number of processes waiting to run on the core.
+     */
+    public synchronized int getLoad()
+    {
+        return scheduler.size() + wokenQueue.size();
+    }
+
+    /**
+     * \brief Called when one of the core's processes is done with its IO.
+     * \details This can be called from an IO thread, so the process
+     *          is handed over through a thread safe queue and given
+     *          back to the scheduler by the core's dispatcher. It is ready
+     *          from now on, even if the dispatcher is busy for a while.
+     */
+    public void wakeProcess(ProcessControlBlock pcb)
+    {
+        pcb.setProcessState(State.READY);
+        wokenQueue.add(pcb);
+    }
+
+    /**
+     * \brief Hands every woken process back to the scheduler.
+     */
+    private void moveWokenProcesses()
+    {
+        ProcessControlBlock pcb;
+        while ((pcb = wokenQueue.poll()) != null)
+        {
+            synchronized (this)
+            {
+                scheduler.onWake(pcb);
+            }
+        }
+    }
+
+    /**
+     * \brief Idles the core until there may be new work.
+     * \details In virtual time the core gives up its turn until it is
+     *          woken, otherwise it waits on the OS.
+     */
+    private void waitForWork()
+    {
+        isIdle = true;
+        if (participant != null)
+            context.events.park();
+        else
+            os.waitForWork();
+        isIdle = false;
+    }
+
+    /**
+     * \brief Wakes the core if it is idle.
+     */
+    public void signal()
+    {
+        if (isIdle && participant != null)
+            context.events.unpark(participant);
+    }
+
+    /**
+     * \brief Checks if the core is waiting for work.
+     */
+    public boolean isIdle()
+    {
+        return isIdle;
+    }
+
+    /**
+     * \brief Counts a process this core took from another.
+     */
+    public void countSteal()
+    {
+        numStolen++;
+    }
+
+    /**
+     * \brief Getters for the core's number and statistics.
+     */
+    public int getCoreID()
+    {
+        return coreID;
+    }
+
+    public long getBusyTime()
+    {
+        return busyTime;
+    }
+
+    public int getNumDispatched()
+    {
+        return numDispatched;
+    }
+
+    public int getNumStolen()
+    {
+        return numStolen;
+    }
+}
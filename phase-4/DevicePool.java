@@ -0,0 +1,213 @@
+/**
+ * Pool of identical devices, such as the system's projectors.
+ * An operation is given whichever device is free. Free devices are kept
+ * in an atomic bitset, one bit per device, so a free device is found
+ * and claimed with a single compare and swap, without locking.
+ *
+ * When every device is busy, operations wait in a queue and are served
+ * in the order they arrived. A released device is handed straight to
+ * the operation at the front of the queue, so new operations cannot
+ * take it first.
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+class DevicePool
+{
+    private static final int WORD_BITS = 64;
+    private static final int WORD_SHIFT = 6;
+
+    private final SimulationContext context;
+    private final String name;
+    private final int numDevices;
+    private final AtomicLongArray freeBits;
+    private final ConcurrentLinkedQueue<Waiter> waiters;
+
+    /**
+     * \brief An operation waiting for a device.
+     * \details Either a thread blocked in acquire(), or a callback from
+     *          acquireLater().
+     */
+    private static final class Waiter
+    {
+        private final Thread thread;
+        private final IntConsumer onAcquired;
+        private volatile int device;
+
+        Waiter(Thread thread, IntConsumer onAcquired)
+        {
+            this.thread = thread;
+            this.onAcquired = onAcquired;
+            this.device = -1;
+        }
+
+        /**
+         * \brief Gives the waiter its device and wakes it up.
+         */
+        void grant(int device)
+        {
+            if (onAcquired != null)
+                onAcquired.accept(device);
+            else
+            {
+                this.device = device;
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * \brief DevicePool constructor.
+     * \details Every device starts out free.
+     * \param context The simulation the devices belong to.
+     * \param name Name of the device, used in errors.
+     * \param numDevices Number of devices in the pool.
+     */
+    DevicePool(SimulationContext context, String name, int numDevices)
+    {
+        this.context = context;
+        this.name = name;
+        this.numDevices = numDevices;
+        this.freeBits = new AtomicLongArray(Math.max(1, (numDevices + WORD_BITS - 1) >> WORD_SHIFT));
+        this.waiters = new ConcurrentLinkedQueue<Waiter>();
+
+        for (int i = 0; i < numDevices; i++)
+            freeBits.set(i >> WORD_SHIFT, freeBits.get(i >> WORD_SHIFT) | (1L << i));
+    }
+
+    /**
+     * \brief Acquires a device, blocking until one is free.
+     * \return The index of the device.
+     */
+    public int acquire()
+    {
+        checkDevices();
+
+        int device = waiters.isEmpty() ? tryAcquire() : -1;
+        if (device >= 0)
+            return device;
+
+        Waiter waiter = new Waiter(Thread.currentThread(), null);
+        waiters.add(waiter);
+        grantWaiters();
+
+        while (waiter.device < 0)
+        {
+            context.checkFailed();
+            LockSupport.park(this);
+        }
+        return waiter.device;
+    }
+
+    /**
+     * \brief Acquires a device without blocking the caller.
+     * \details If a device is free the callback runs right away,
+     *          otherwise it runs when a device is handed to it.
+     * \param onAcquired Given the index of the device.
+     */
+    public void acquireLater(IntConsumer onAcquired)
+    {
+        checkDevices();
+
+        int device = waiters.isEmpty() ? tryAcquire() : -1;
+        if (device >= 0)
+        {
+            onAcquired.accept(device);
+            return;
+        }
+
+        waiters.add(new Waiter(null, onAcquired));
+        grantWaiters();
+    }
+
+    /**
+     * \brief Releases a device, handing it to the next waiter if there is one.
+     * \param device The index returned when the device was acquired.
+     */
+    public void release(int device)
+    {
+        if (device < 0 || device >= numDevices)
+            context.logger.logError("Released a " + name + " that does not exist");
+
+        if (!setFree(device))
+            context.logger.logError("Released a " + name + " that was not acquired");
+        grantWaiters();
+    }
+
+    /**
+     * \brief Marks a device as free.
+     * \return False if it was already free.
+     */
+    private boolean setFree(int device)
+    {
+        int word = device >> WORD_SHIFT;
+        long bit = 1L << device;
+        long bits;
+        do
+        {
+            bits = freeBits.get(word);
+            if ((bits & bit) != 0)
+                return false;
+        } while (!freeBits.compareAndSet(word, bits, bits | bit));
+
+        return true;
+    }
+
+    /**
+     * \brief Claims the lowest free device.
+     * \return The index of the device, or -1 if they are all busy.
+     */
+    private int tryAcquire()
+    {
+        for (int word = 0; word < freeBits.length(); word++)
+        {
+            long bits = freeBits.get(word);
+            while (bits != 0)
+            {
+                long lowest = bits & -bits;
+                if (freeBits.compareAndSet(word, bits, bits & ~lowest))
+                    return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(lowest);
+                bits = freeBits.get(word);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * \brief Hands free devices to waiters until one or the other runs out.
+     * \details Called after every release and every new waiter, so a
+     *          device is never left free while an operation waits on it.
+     *          If another thread served the last waiter first, the
+     *          device claimed for it is put back.
+     */
+    private void grantWaiters()
+    {
+        while (!waiters.isEmpty())
+        {
+            int device = tryAcquire();
+            if (device < 0)
+                return;
+
+            Waiter waiter = waiters.poll();
+            if (waiter == null)
+            {
+                setFree(device);
+                continue;
+            }
+            waiter.grant(device);
+        }
+    }
+
+    /**
+     * \brief Checks there is a device an operation could ever be given.
+     */
+    private void checkDevices()
+    {
+        if (numDevices == 0)
+            context.logger.logError("No " + name + " to run the operation on");
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * A single hard drive with its own request queue.
+ * When disk scheduling is turned on, hard drive operations queue on a
+ * drive instead of taking whichever drive is free. The drive serves one
+ * request at a time, and each time it finishes one the scheduling policy
+ * picks the next. Moving the head costs the configured seek time for
+ * every cylinder it crosses, so the order requests are served in changes
+ * how long they take.
+ */
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+class DiskDrive
+{
+    private final SimulationContext context;
+    private final int driveID;
+    private final DiskScheduling policy;
+    private int head;
+    private boolean isBusy;
+    private long seekNanos;
+    private long numServed,
+                 totalSeekDistance,
+                 totalWaitNanos;
+    private int peakQueueLength;
+
+    /**
+     * \brief DiskDrive constructor.
+     * \details The head starts on the first cylinder.
+     * \param context The simulation the drive belongs to.
+     * \param driveID Index of the drive.
+     */
+    DiskDrive(SimulationContext context, int driveID)
+    {
+        this.context = context;
+        this.driveID = driveID;
+        this.policy = DiskScheduling.create(context.config.diskScheduling,
+                                            context.config.diskCylinders);
+        this.head = 0;
+        this.isBusy = false;
+        this.seekNanos = 0;
+        this.numServed = 0;
+        this.totalSeekDistance = 0;
+        this.totalWaitNanos = 0;
+        this.peakQueueLength = 0;
+    }
+
+    /**
+     * \brief Queues a request and blocks until the drive serves it.
+     * \param cylinder The cylinder the operation reads or writes.
+     * \return The index of the drive.
+     */
+    public int acquire(int cylinder)
+    {
+        DiskRequest request = new DiskRequest(cylinder, context.clock.nanoTime(),
+                                              Thread.currentThread(), null);
+        submit(request);
+
+        while (!request.isGranted())
+        {
+            context.checkFailed();
+            LockSupport.park(this);
+        }
+        return driveID;
+    }
+
+    /**
+     * \brief Queues a request without blocking the caller.
+     * \param cylinder The cylinder the operation reads or writes.
+     * \param onAcquired Run with the drive's index once it serves the request.
+     */
+    public void acquireLater(int cylinder, IntConsumer onAcquired)
+    {
+        submit(new DiskRequest(cylinder, context.clock.nanoTime(), null, onAcquired));
+    }
+
+    /**
+     * \brief Finishes the current request and starts the next one.
+     */
+    public void release()
+    {
+        DiskRequest next;
+        synchronized (this)
+        {
+            if (!isBusy)
+                context.logger.logError("Released hard drive " + driveID + " that was not acquired");
+            isBusy = false;
+            next = startNext();
+        }
+
+        if (next != null)
+            next.grant(driveID);
+    }
+
+    /**
+     * \brief Gives the seek time of the request being served (ns).
+     * \details Only meaningful to whoever holds the drive.
+     */
+    public synchronized long getSeekNanos()
+    {
+        return seekNanos;
+    }
+
+    /**
+     * \brief Gives the number of requests queued or being served.
+     */
+    public synchronized int getLoad()
+    {
+        return policy.size() + (isBusy ? 1 : 0);
+    }
+
+    /**
+     * \brief Getters for the drive's statistics.
+     */
+    public synchronized long getNumServed()
+    {
+        return numServed;
+    }
+
+    public synchronized long getTotalSeekDistance()
+    {
+        return totalSeekDistance;
+    }
+
+    public synchronized long getTotalWaitNanos()
+    {
+        return totalWaitNanos;
+    }
+
+    public synchronized int getPeakQueueLength()
+    {
+        return peakQueueLength;
+    }
+
+    /**
+     * \brief Adds a request to the queue, starting it if the drive is idle.
+     * \details The drive is handed over outside of the lock, since in
+     *          virtual time that runs the rest of the operation.
+     */
+    private void submit(DiskRequest request)
+    {
+        DiskRequest next = null;
+        synchronized (this)
+        {
+            policy.add(request);
+            peakQueueLength = Math.max(peakQueueLength, policy.size());
+            if (!isBusy)
+                next = startNext();
+        }
+
+        if (next != null)
+            next.grant(driveID);
+    }
+
+    /**
+     * \brief Moves the head to the request the policy picks next.
+     * \return The request, or null if nothing is waiting.
+     */
+    private DiskRequest startNext()
+    {
+        DiskRequest next = policy.next(head);
+        if (next == null)
+            return null;
+
+        isBusy = true;
+        head = next.cylinder;
+        seekNanos = (long)next.seekDistance * context.config.seekTime * 1000L;
+        numServed++;
+        totalSeekDistance += next.seekDistance;
+        totalWaitNanos += context.clock.nanoTime() - next.arrivalTime;
+        return next;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * A hard drive operation waiting in a drive's request queue.
+ * It knows the cylinder it reads or writes, and who to hand the drive to
+ * once the disk scheduling policy picks it: a thread blocked on the drive,
+ * or a callback in virtual time.
+ */
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+class DiskRequest
+{
+    final int cylinder;
+    final long arrivalTime;
+    int seekDistance;
+    private final Thread thread;
+    private final IntConsumer onGranted;
+    private volatile boolean isGranted;
+
+    /**
+     * \brief DiskRequest constructor.
+     * \param cylinder The cylinder the operation reads or writes.
+     * \param arrivalTime When the request was made (ns).
+     * \param thread The thread waiting on the drive, or null.
+     * \param onGranted Run with the drive's index once the drive is
+     *        handed over, or null if a thread is waiting instead.
+     */
+    DiskRequest(int cylinder, long arrivalTime, Thread thread, IntConsumer onGranted)
+    {
+        this.cylinder = cylinder;
+        this.arrivalTime = arrivalTime;
+        this.seekDistance = 0;
+        this.thread = thread;
+        this.onGranted = onGranted;
+        this.isGranted = false;
+    }
+
+    /**
+     * \brief Hands the drive to the request.
+     * \param drive Index of the drive.
+     */
+    void grant(int drive)
+    {
+        isGranted = true;
+        if (onGranted != null)
+            onGranted.accept(drive);
+        else
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * \brief Checks if the drive has been handed to the request.
+     */
+    boolean isGranted()
+    {
+        return isGranted;
+    }
+}
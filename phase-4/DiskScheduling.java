@@ -0,0 +1,216 @@
+/**
+ * Disk scheduling policies for the hard drive request queues.
+ * A policy holds the requests waiting on one drive and picks which one
+ * the drive serves next, given where its head is. It also says how far
+ * the head travels to get there, which is what the seek time is charged
+ * on. Apart from FIFO, requests are kept sorted by cylinder, so picking
+ * the next one takes O(log n).
+ */
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+interface DiskScheduling
+{
+    /**
+     * \brief Adds a request to the queue.
+     */
+    void add(DiskRequest request);
+
+    /**
+     * \brief Takes the request to serve next off the queue.
+     * \details Sets the request's seek distance to the number of
+     *          cylinders the head crosses to reach it.
+     * \param head The cylinder the head is on.
+     * \return The request, or null if the queue is empty.
+     */
+    DiskRequest next(int head);
+
+    /**
+     * \brief Gives the number of requests waiting.
+     */
+    int size();
+
+    /**
+     * \brief Creates the policy chosen in the configuration.
+     * \param numCylinders Number of cylinders on the drive.
+     */
+    static DiskScheduling create(DiskSchedulingType type, int numCylinders)
+    {
+        switch (type)
+        {
+            case FIFO:
+                return new FifoScheduling();
+            case SSTF:
+                return new ShortestSeekScheduling();
+            case SCAN:
+                return new ScanScheduling(numCylinders);
+            case CLOOK:
+                return new CLookScheduling();
+            default:
+                return null;
+        }
+    }
+}
+
+
+/**
+ * First come first served.
+ * Requests are served in the order they arrived, wherever they are.
+ */
+class FifoScheduling implements DiskScheduling
+{
+    private final ArrayDeque<DiskRequest> requests = new ArrayDeque<DiskRequest>();
+
+    public void add(DiskRequest request)
+    {
+        requests.add(request);
+    }
+
+    public DiskRequest next(int head)
+    {
+        DiskRequest request = requests.poll();
+        if (request != null)
+            request.seekDistance = Math.abs(request.cylinder - head);
+        return request;
+    }
+
+    public int size()
+    {
+        return requests.size();
+    }
+}
+
+
+/**
+ * Base for the policies that pick requests by cylinder.
+ * Requests are kept in a tree keyed by cylinder, and requests for the
+ * same cylinder are served in the order they arrived.
+ */
+abstract class SortedScheduling implements DiskScheduling
+{
+    protected final TreeMap<Integer, ArrayDeque<DiskRequest>> requests =
+        new TreeMap<Integer, ArrayDeque<DiskRequest>>();
+    private int numRequests = 0;
+
+    public void add(DiskRequest request)
+    {
+        ArrayDeque<DiskRequest> sameCylinder = requests.get(request.cylinder);
+        if (sameCylinder == null)
+        {
+            sameCylinder = new ArrayDeque<DiskRequest>();
+            requests.put(request.cylinder, sameCylinder);
+        }
+        sameCylinder.add(request);
+        numRequests++;
+    }
+
+    public int size()
+    {
+        return numRequests;
+    }
+
+    /**
+     * \brief Takes the oldest request for a cylinder off the queue.
+     * \param cylinder A cylinder with requests waiting.
+     * \param seekDistance How far the head travels to get there.
+     */
+    protected DiskRequest take(int cylinder, int seekDistance)
+    {
+        ArrayDeque<DiskRequest> sameCylinder = requests.get(cylinder);
+        DiskRequest request = sameCylinder.poll();
+        if (sameCylinder.isEmpty())
+            requests.remove(cylinder);
+        numRequests--;
+
+        request.seekDistance = seekDistance;
+        return request;
+    }
+}
+
+
+/**
+ * Shortest seek time first.
+ * Serves whichever request is closest to the head. Requests far from a
+ * busy part of the disk can wait a long time.
+ */
+class ShortestSeekScheduling extends SortedScheduling
+{
+    public DiskRequest next(int head)
+    {
+        Integer below = requests.floorKey(head);
+        Integer above = requests.ceilingKey(head);
+        if (below == null && above == null)
+            return null;
+
+        if (above == null || (below != null && head - below < above - head))
+            return take(below, head - below);
+        return take(above, above - head);
+    }
+}
+
+
+/**
+ * SCAN, the elevator algorithm.
+ * The head sweeps toward one end of the disk serving requests on the
+ * way, and only turns around once it has reached the end.
+ */
+class ScanScheduling extends SortedScheduling
+{
+    private final int lastCylinder;
+    private boolean isMovingUp = true;
+
+    ScanScheduling(int numCylinders)
+    {
+        this.lastCylinder = numCylinders - 1;
+    }
+
+    public DiskRequest next(int head)
+    {
+        if (requests.isEmpty())
+            return null;
+
+        if (isMovingUp)
+        {
+            Integer above = requests.ceilingKey(head);
+            if (above != null)
+                return take(above, above - head);
+
+            isMovingUp = false;
+            int below = requests.floorKey(head);
+            return take(below, (lastCylinder - head) + (lastCylinder - below));
+        }
+
+        Integer below = requests.floorKey(head);
+        if (below != null)
+            return take(below, head - below);
+
+        isMovingUp = true;
+        int above = requests.ceilingKey(head);
+        return take(above, head + above);
+    }
+}
+
+
+/**
+ * C-LOOK, the circular elevator.
+ * The head only serves requests while moving up. After the highest
+ * request it jumps straight back to the lowest one, so every part of
+ * the disk waits about as long as any other.
+ */
+class CLookScheduling extends SortedScheduling
+{
+    public DiskRequest next(int head)
+    {
+        if (requests.isEmpty())
+            return null;
+
+        Integer above = requests.ceilingKey(head);
+        if (above != null)
+            return take(above, above - head);
+
+        Map.Entry<Integer, ArrayDeque<DiskRequest>> lowest = requests.firstEntry();
+        return take(lowest.getKey(), head - lowest.getKey());
+    }
+}
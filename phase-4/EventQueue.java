@@ -0,0 +1,292 @@
+/**
+ * Discrete event module for the OS simulation.
+ * Instead of waiting on the wall clock for an operation to finish,
+ * the completion is scheduled as an event in the future. Events are
+ * fired in order of their timestamp, and firing one moves the virtual
+ * clock forward to that time. Events with the same timestamp are fired
+ * in the order they were scheduled.
+ *
+ * When several simulated cores run at once, each core has its own
+ * thread, but only one of them runs at any moment. A core that has to
+ * wait on the clock hands its turn to the next core that is ready to run,
+ * and time only moves forward once every core is waiting. The order the
+ * cores run in depends only on the events, so a virtual simulation gives
+ * the same log no matter how many real CPUs the machine has.
+ */
+
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+
+/**
+ * \brief A single action that happens at a point in simulated time.
+ */
+class Event implements Comparable<Event>
+{
+    public final long time;
+    public final long sequence;
+    private final Runnable action;
+    private boolean fired;
+    Participant waiter;
+
+    /**
+     * \brief Event constructor.
+     * \param time Simulated time the event fires at (ns).
+     * \param sequence Tie breaker for events at the same time.
+     * \param action Work to perform when fired, can be null.
+     */
+    Event(long time, long sequence, Runnable action)
+    {
+        this.time = time;
+        this.sequence = sequence;
+        this.action = action;
+        this.fired = false;
+        this.waiter = null;
+    }
+
+    /**
+     * \brief Runs the event's action.
+     */
+    void fire()
+    {
+        fired = true;
+        if (action != null)
+            action.run();
+    }
+
+    /**
+     * \brief Checks if the event has already been fired.
+     */
+    public boolean hasFired()
+    {
+        return fired;
+    }
+
+    /**
+     * \brief Orders events by time, then by the order they were scheduled.
+     */
+    public int compareTo(Event other)
+    {
+        if (time != other.time)
+            return Long.compare(time, other.time);
+        return Long.compare(sequence, other.sequence);
+    }
+}
+
+class EventQueue
+{
+    private final SimulationContext context;
+    private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+    private long sequenceCounter = 0;
+    private final LinkedList<Participant> readyParticipants = new LinkedList<Participant>();
+    private Participant owner = null;
+    private final ThreadLocal<Participant> current = new ThreadLocal<Participant>();
+
+    /**
+     * \brief EventQueue constructor.
+     * \details The queue starts out empty. This depends upon the
+     *          context's clock being created first.
+     * \param context The simulation the queue belongs to.
+     */
+    EventQueue(SimulationContext context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * \brief Schedules an action in the future.
+     * \param delay Amount of simulated time from now (ns).
+     * \param action Work to perform when the event fires, can be null.
+     * \return The scheduled event.
+     */
+    public synchronized Event schedule(long delay, Runnable action)
+    {
+        Event event = new Event(context.clock.nanoTime() + delay,
+                                sequenceCounter++, action);
+        events.add(event);
+        return event;
+    }
+
+    /**
+     * \brief Fires the next event in the queue.
+     * \details The clock is moved forward to the event's time before
+     *          the action runs, so anything logged by the action gets
+     *          the right timestamp.
+     * \return False if there are no events left, otherwise true.
+     */
+    public synchronized boolean fireNext()
+    {
+        Event event = events.poll();
+        if (event == null)
+            return false;
+
+        context.clock.advanceTo(event.time);
+        event.fire();
+        if (event.waiter != null)
+            readyParticipants.add(event.waiter);
+        return true;
+    }
+
+    /**
+     * \brief Fires events in order until the target event has fired.
+     * \details If the calling thread is a participant, other participants
+     *          get their turns while it waits.
+     * \param target The event that is being waited on.
+     */
+    public synchronized void runUntil(Event target)
+    {
+        Participant self = current.get();
+        if (self != null)
+        {
+            if (!target.hasFired())
+            {
+                target.waiter = self;
+                waitForTurn(self);
+            }
+            return;
+        }
+
+        while (!target.hasFired())
+        {
+            if (!fireNext())
+                context.logger.logError("Event queue ran empty before the event fired");
+        }
+    }
+
+    /**
+     * \brief Registers a new participant.
+     * \details Every participant must be registered before any of them
+     *          starts, in the order they should get their first turn.
+     * \return The participant, to be handed to its thread.
+     */
+    public synchronized Participant addParticipant()
+    {
+        Participant participant = new Participant();
+        readyParticipants.add(participant);
+        return participant;
+    }
+
+    /**
+     * \brief Binds a participant to the calling thread and waits for its first turn.
+     */
+    public synchronized void startTurn(Participant self)
+    {
+        current.set(self);
+        if (owner == null && readyParticipants.peek() == self)
+            owner = readyParticipants.poll();
+        waitForOwnership(self);
+    }
+
+    /**
+     * \brief Gives up the calling participant's turn until it is unparked.
+     * \details Used by a core with nothing to run. Other participants
+     *          run, and time moves forward, in the meantime.
+     */
+    public synchronized void park()
+    {
+        Participant self = current.get();
+        self.park();
+        waitForTurn(self);
+    }
+
+    /**
+     * \brief Lets a parked participant run again.
+     * \details Does nothing if the participant is not parked. It gets
+     *          its turn after the participants that were ready before it.
+     */
+    public synchronized void unpark(Participant participant)
+    {
+        if (participant.unpark())
+            readyParticipants.add(participant);
+    }
+
+    /**
+     * \brief Removes the calling thread from the participants for good.
+     * \details The turn is handed on, firing events until some other
+     *          participant is ready to take it.
+     */
+    public synchronized void leave()
+    {
+        current.remove();
+
+        while (readyParticipants.isEmpty())
+        {
+            if (!fireNext())
+            {
+                owner = null;
+                return;
+            }
+        }
+
+        owner = readyParticipants.poll();
+        notifyAll();
+    }
+
+    /**
+     * \brief Waits until the participant is ready and has the turn again.
+     * \details While nobody is ready to run, events are fired to move
+     *          time forward. When someone else is ready, the turn is
+     *          handed to them instead.
+     */
+    private void waitForTurn(Participant self)
+    {
+        while (true)
+        {
+            context.checkFailed();
+            Participant next = readyParticipants.poll();
+            if (next == self)
+                return;
+
+            if (next != null)
+            {
+                owner = next;
+                notifyAll();
+                waitForOwnership(self);
+                return;
+            }
+
+            if (!fireNext())
+                context.logger.logError("Processes are waiting on IO that will never complete");
+        }
+    }
+
+    /**
+     * \brief Blocks the calling thread until the participant owns the turn.
+     */
+    private void waitForOwnership(Participant self)
+    {
+        try {
+            while (owner != self)
+            {
+                context.checkFailed();
+                wait();
+            }
+        } catch (InterruptedException e) {
+            context.logger.logError("Simulated core was interrupted");
+        }
+    }
+
+    /**
+     * \brief Wakes every participant waiting for its turn.
+     * \details Called when the simulation fails, so they can stop.
+     */
+    public synchronized void wakeAll()
+    {
+        notifyAll();
+    }
+
+    /**
+     * \brief Fires every event left in the queue.
+     */
+    public synchronized void runAll()
+    {
+        while (fireNext());
+    }
+
+    /**
+     * \brief Checks if there are any events left to fire.
+     */
+    public synchronized boolean isEmpty()
+    {
+        return events.isEmpty();
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * First come first served scheduling.
+ * Processes run in the order they became ready, each until it blocks
+ * on IO or finishes.
+ */
+
+import java.util.ArrayDeque;
+
+public class FcfsScheduler implements Scheduler
+{
+    private final ArrayDeque<ProcessControlBlock> readyQueue;
+
+    public FcfsScheduler()
+    {
+        readyQueue = new ArrayDeque<ProcessControlBlock>();
+    }
+
+    public String getName()
+    {
+        return "fifo";
+    }
+
+    public void init(SimulationContext context)
+    {
+    }
+
+    public void admit(ProcessControlBlock pcb)
+    {
+        readyQueue.add(pcb);
+    }
+
+    public ProcessControlBlock pickNext()
+    {
+        return readyQueue.poll();
+    }
+
+    public int size()
+    {
+        return readyQueue.size();
+    }
+}
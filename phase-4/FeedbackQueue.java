@@ -0,0 +1,216 @@
+/**
+ * Ready queue of the multilevel feedback queue scheduler.
+ * There is a first in first out queue for every level, and the next
+ * process always comes from the highest level that has one. A process
+ * drops a level each time it uses up its quantum and rises a level each
+ * time it blocks on IO, so interactive processes stay near the top while
+ * CPU bound ones sink to the longer quanta at the bottom. Once every
+ * boost interval, every process goes back to the top level so nothing
+ * at the bottom starves.
+ *
+ * Each level is a ring buffer over an array, so adding and taking a
+ * process is O(1) apart from the occasional growth of the array, and
+ * finding the next one only looks at the few levels there are.
+ */
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+class FeedbackQueue extends AbstractQueue<ProcessControlBlock>
+{
+    private final SimulationContext context;
+    private final ProcessRing[] levels;
+    private final long boostInterval;
+    private long boostEpoch;
+    private int size;
+
+    /**
+     * \brief FeedbackQueue constructor.
+     * \param context The simulation the queue is in, which sets the
+     *        number of levels and the boost interval.
+     */
+    FeedbackQueue(SimulationContext context)
+    {
+        this.context = context;
+        this.levels = new ProcessRing[context.config.feedbackLevels];
+        for (int i = 0; i < levels.length; i++)
+            levels[i] = new ProcessRing();
+        this.boostInterval = context.config.boostInterval * 1000000L;
+        this.boostEpoch = 0;
+        this.size = 0;
+    }
+
+    /**
+     * \brief Adds a process to the back of its level.
+     */
+    public boolean offer(ProcessControlBlock pcb)
+    {
+        boostIfDue();
+        levels[Math.min(pcb.getFeedbackLevel(), levels.length - 1)].add(pcb);
+        size++;
+        return true;
+    }
+
+    /**
+     * \brief Takes the process at the front of the highest level.
+     * \return The process, or null if every level is empty.
+     */
+    public ProcessControlBlock poll()
+    {
+        boostIfDue();
+        for (ProcessRing level : levels)
+        {
+            if (!level.isEmpty())
+            {
+                size--;
+                return level.poll();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * \brief Gives the process poll() would take.
+     */
+    public ProcessControlBlock peek()
+    {
+        boostIfDue();
+        for (ProcessRing level : levels)
+        {
+            if (!level.isEmpty())
+                return level.peek();
+        }
+
+        return null;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * \brief Iterates over the processes from the highest level down.
+     */
+    public Iterator<ProcessControlBlock> iterator()
+    {
+        return new Iterator<ProcessControlBlock>()
+        {
+            private int level = 0,
+                        index = 0;
+
+            public boolean hasNext()
+            {
+                while (level < levels.length && index >= levels[level].size())
+                {
+                    level++;
+                    index = 0;
+                }
+                return level < levels.length;
+            }
+
+            public ProcessControlBlock next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return levels[level].get(index++);
+            }
+        };
+    }
+
+    /**
+     * \brief Moves every waiting process to the top level if a boost is due.
+     * \details Boosts happen at fixed times from the start of the
+     *          simulation, so every core's queue and every process agree
+     *          on when they were without telling each other. The
+     *          processes keep their order, higher levels first. Processes
+     *          that are running or blocked catch up on the boost the next
+     *          time their level is asked for.
+     */
+    private void boostIfDue()
+    {
+        if (boostInterval <= 0 || levels.length == 1)
+            return;
+
+        // Processes are queued before the simulation starts the clock
+        long epoch = (context.clock.nanoTime() - context.metrics.getStartTime()) / boostInterval;
+        boolean isDue = epoch > boostEpoch;
+        boostEpoch = epoch;
+        if (!isDue)
+            return;
+
+        for (int i = 1; i < levels.length; i++)
+        {
+            while (!levels[i].isEmpty())
+            {
+                ProcessControlBlock pcb = levels[i].poll();
+                pcb.getFeedbackLevel();
+                levels[0].add(pcb);
+            }
+        }
+    }
+
+    /**
+     * First in first out queue of processes in a ring buffer.
+     * The array doubles when it fills up.
+     */
+    private static class ProcessRing
+    {
+        private ProcessControlBlock[] processes;
+        private int head,
+                    size;
+
+        ProcessRing()
+        {
+            processes = new ProcessControlBlock[16];
+            head = 0;
+            size = 0;
+        }
+
+        void add(ProcessControlBlock pcb)
+        {
+            if (size == processes.length)
+            {
+                ProcessControlBlock[] grown = new ProcessControlBlock[size * 2];
+                for (int i = 0; i < size; i++)
+                    grown[i] = get(i);
+                processes = grown;
+                head = 0;
+            }
+
+            processes[(head + size) & (processes.length - 1)] = pcb;
+            size++;
+        }
+
+        ProcessControlBlock poll()
+        {
+            ProcessControlBlock pcb = processes[head];
+            processes[head] = null;
+            head = (head + 1) & (processes.length - 1);
+            size--;
+            return pcb;
+        }
+
+        ProcessControlBlock peek()
+        {
+            return processes[head];
+        }
+
+        ProcessControlBlock get(int index)
+        {
+            return processes[(head + index) & (processes.length - 1)];
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Multilevel feedback queue scheduling.
+ * Processes run from the highest level that has one, with the quantum
+ * of their level. A process that uses up its quantum drops a level,
+ * one that blocks on IO rises a level, and every process goes back to
+ * the top level once every boost interval. See FeedbackQueue.
+ */
+
+public class FeedbackScheduler implements Scheduler
+{
+    private SimulationContext context;
+    private FeedbackQueue readyQueue;
+
+    public String getName()
+    {
+        return "mlfq";
+    }
+
+    /**
+     * \brief Checks the quantum, the number of levels and the boost interval.
+     */
+    public void checkSettings(Configuration config)
+    {
+        if (config.processorQuantumNum < 1)
+            throw new SimulationException("MLFQ needs a processor quantum of at least one cycle\n" +
+                                          "Exiting with return code 1");
+        if (config.feedbackLevels < 1 || config.boostInterval < 0)
+            throw new SimulationException("MLFQ needs at least one level and a boost interval " +
+                                          "that is not negative\n" +
+                                          "Exiting with return code 1");
+    }
+
+    public void init(SimulationContext context)
+    {
+        this.context = context;
+        this.readyQueue = new FeedbackQueue(context);
+    }
+
+    public void admit(ProcessControlBlock pcb)
+    {
+        readyQueue.add(pcb);
+    }
+
+    public ProcessControlBlock pickNext()
+    {
+        return readyQueue.poll();
+    }
+
+    public int size()
+    {
+        return readyQueue.size();
+    }
+
+    /**
+     * \brief Gives the quantum of the process's level, and counts the dispatch on it.
+     */
+    public int getTimeSlice(ProcessControlBlock pcb)
+    {
+        int level = pcb.getFeedbackLevel();
+        context.metrics.recordLevelDispatch(level);
+        return context.config.getLevelQuantum(level);
+    }
+
+    /**
+     * \brief Drops the process a level, since it used up its quantum.
+     */
+    public void onPreempt(ProcessControlBlock pcb)
+    {
+        int level = pcb.getFeedbackLevel();
+        if (level < context.config.feedbackLevels - 1)
+        {
+            pcb.setFeedbackLevel(level + 1);
+            context.metrics.recordDemotion();
+        }
+        admit(pcb);
+    }
+
+    /**
+     * \brief Raises the process a level, since it gave up the core for IO.
+     */
+    public void onBlock(ProcessControlBlock pcb)
+    {
+        int level = pcb.getFeedbackLevel();
+        if (level > 0)
+        {
+            pcb.setFeedbackLevel(level - 1);
+            context.metrics.recordPromotion();
+        }
+    }
+
+    /**
+     * \brief Records the time the process spent on its last level.
+     */
+    public void onExit(ProcessControlBlock pcb)
+    {
+        pcb.setFeedbackLevel(pcb.getFeedbackLevel());
+    }
+}
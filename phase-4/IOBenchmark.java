@@ -0,0 +1,82 @@
+/**
+ * Benchmark for the IO executor modes.
+ * Runs the same workload once for each mode and reports how long
+ * the simulation took. Every cycle time is zeroed, so the numbers
+ * only measure the simulator's own overhead, which is mostly spent
+ * handing IO operations off to threads.
+ *
+ * Usage: java IOBenchmark <config file> [iterations]
+ */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+class IOBenchmark
+{
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int DEFAULT_ITERATIONS = 200;
+
+    public static void main(String[] args)
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Must supply configuration file as command line argument");
+            System.exit(1);
+        }
+
+        int iterations = DEFAULT_ITERATIONS;
+        if (args.length > 1)
+            iterations = Integer.parseInt(args[1]);
+
+        PrintStream console = System.out;
+        PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+        double callerTime = 0;
+
+        console.println(String.format("%-8s %14s %10s", "Mode", "ms/run", "relative"));
+
+        for (IOMode mode : new IOMode[] { IOMode.CALLER, IOMode.POOL, IOMode.VIRTUAL })
+        {
+            long totalNanos = 0;
+
+            for (int i = 0; i < WARMUP_ITERATIONS + iterations; i++)
+            {
+                Configuration config = new Configuration(args[0]);
+                zeroCycleTimes(config);
+                config.clockMode = ClockMode.REAL;
+                config.ioMode = mode;
+                OperatingSystem os = new OperatingSystem(new SimulationContext(config));
+
+                System.setOut(silent);
+                long start = System.nanoTime();
+                os.simulate();
+                long elapsed = System.nanoTime() - start;
+                System.setOut(console);
+
+                if (i >= WARMUP_ITERATIONS)
+                    totalNanos += elapsed;
+            }
+
+            double msPerRun = (double)totalNanos / iterations / 1000000.0;
+            if (mode == IOMode.CALLER)
+                callerTime = msPerRun;
+
+            console.println(String.format("%-8s %14.4f %9.2fx", mode, msPerRun,
+                                          msPerRun / callerTime));
+        }
+    }
+
+    /**
+     * \brief Sets every operation to take no time at all.
+     */
+    private static void zeroCycleTimes(Configuration config)
+    {
+        config.processorTime = 0;
+        config.monitorTime = 0;
+        config.hardDriveTime = 0;
+        config.keyboardTime = 0;
+        config.scannerTime = 0;
+        config.projectorTime = 0;
+        config.memoryTime = 0;
+        config.updateCycleTimes();
+    }
+}
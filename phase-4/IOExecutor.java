@@ -0,0 +1,170 @@
+/**
+ * IO executor module for the OS simulation.
+ * Runs the input and output operations of a simulation's processes,
+ * and is shared by its process control blocks and resource manager.
+ * Each simulation has its own executor, so one simulation's IO never
+ * waits behind another's. There are three modes: a fixed pool of
+ * threads, a virtual thread per task, and running the task on the
+ * calling thread. In caller mode a task is held until the thread that
+ * submitted it calls runDeferred(), so a core can finish with the
+ * process that issued the IO before the IO runs.
+ */
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+class IOExecutor
+{
+    private static volatile boolean warnedNoVirtualThreads = false;
+
+    private final boolean isCallerMode;
+    private volatile ExecutorService executor = null;
+    private final ThreadLocal<ArrayDeque<Runnable>> deferredTasks =
+        new ThreadLocal<ArrayDeque<Runnable>>()
+        {
+            protected ArrayDeque<Runnable> initialValue()
+            {
+                return new ArrayDeque<Runnable>();
+            }
+        };
+
+    /**
+     * \brief Creates the executor for the configured mode.
+     * \details This depends upon the context's configuration and
+     *          resource manager being created first. A pool size of 0,
+     *          the default, gives one thread per device.
+     *          Virtual threads need Java 21, so on older versions a cached
+     *          thread pool is used instead.
+     * \param context The simulation the executor runs IO for.
+     */
+    IOExecutor(SimulationContext context)
+    {
+        isCallerMode = context.config.ioMode == IOMode.CALLER;
+        switch (context.config.ioMode)
+        {
+            case POOL:
+                int poolSize = context.config.ioPoolSize;
+                if (poolSize == 0)
+                    poolSize = context.resources.getDeviceCount();
+                executor = Executors.newFixedThreadPool(poolSize, daemonThreadFactory());
+                break;
+
+            case VIRTUAL:
+                executor = newVirtualThreadExecutor();
+                if (executor == null)
+                {
+                    if (!warnedNoVirtualThreads)
+                        System.err.println("Virtual threads are not supported by this JVM, " +
+                                           "using a cached thread pool instead");
+                    warnedNoVirtualThreads = true;
+                    executor = Executors.newCachedThreadPool(daemonThreadFactory());
+                }
+                break;
+
+            case CALLER:
+                executor = null;
+                break;
+        }
+    }
+
+    /**
+     * \brief Submits a task to the executor.
+     * \details In caller mode the task is held for runDeferred(), and
+     *          once the executor is shut down it is run before returning.
+     * \param task The work to perform.
+     * \return A future for the task, or null if it did not go to a thread.
+     */
+    public Future<?> submit(Runnable task)
+    {
+        if (isCallerMode)
+        {
+            deferredTasks.get().add(task);
+            return null;
+        }
+
+        ExecutorService executor = this.executor;
+        if (executor == null)
+        {
+            task.run();
+            return null;
+        }
+
+        return executor.submit(task);
+    }
+
+    /**
+     * \brief Runs the tasks this thread submitted in caller mode.
+     * \details Called by a core once the process that issued the IO has
+     *          left it, so the IO is not counted as the core's busy time
+     *          and the process is not woken while it still holds the core.
+     *          In the other modes there is never anything to run.
+     */
+    public void runDeferred()
+    {
+        ArrayDeque<Runnable> tasks = deferredTasks.get();
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+            task.run();
+    }
+
+    /**
+     * \brief Stops the executor's threads.
+     * \details Tasks that were already submitted still get to finish.
+     */
+    public synchronized void shutdown()
+    {
+        if (executor != null)
+            executor.shutdown();
+        executor = null;
+    }
+
+    /**
+     * \brief Stops the executor's threads without waiting on their tasks.
+     * \details Used when the simulation fails. Threads blocked on a
+     *          device are interrupted so they can see it failed.
+     */
+    public synchronized void shutdownNow()
+    {
+        if (executor != null)
+            executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * \brief Makes threads that will not keep the JVM alive on exit.
+     */
+    private static ThreadFactory daemonThreadFactory()
+    {
+        return new ThreadFactory()
+        {
+            private int threadCount = 0;
+
+            public synchronized Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "io-" + threadCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * \brief Creates a virtual thread per task executor if the JVM has one.
+     * \details Looked up by reflection so the simulator still compiles
+     *          and runs on versions before virtual threads existed.
+     * \return The executor, or null if virtual threads are not supported.
+     */
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
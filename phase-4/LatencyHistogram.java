@@ -0,0 +1,146 @@
+/**
+ * Histogram of latencies in nanoseconds.
+ * Values below 32 ns get a bucket each. Above that, every power of two
+ * is split into 32 buckets, so a bucket is never wider than about 3% of
+ * the values in it and percentiles are within that much of the truth.
+ * The whole range of a long fits in under two thousand buckets, however
+ * many values are recorded. The mean, minimum and maximum are exact.
+ */
+
+class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts;
+    private long count,
+                 sum,
+                 min,
+                 max;
+
+    /**
+     * \brief LatencyHistogram constructor.
+     * \details The histogram starts out empty.
+     */
+    LatencyHistogram()
+    {
+        counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * \brief Adds a value to the histogram.
+     * \param nanos The latency, negative values are counted as zero.
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * \brief Gives the value a percentage of the recorded values are at or below.
+     * \details The answer is the top of the bucket the percentile falls
+     *          in, and never more than the largest value recorded.
+     * \param percentile Between 0 and 100.
+     * \return The value, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(max, lowerBound(i) + bucketWidth(i) - 1);
+        }
+
+        return max;
+    }
+
+    /**
+     * \brief Getters for the summary of the recorded values.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMean()
+    {
+        return count == 0 ? 0.0 : (double)sum / count;
+    }
+
+    public long getMin()
+    {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * \brief Gives the number of buckets, only some of which are used.
+     */
+    public int getNumBuckets()
+    {
+        return counts.length;
+    }
+
+    /**
+     * \brief Gives the number of values in a bucket.
+     */
+    public long getBucketCount(int bucket)
+    {
+        return counts[bucket];
+    }
+
+    /**
+     * \brief Gives the smallest value that goes in a bucket.
+     */
+    public long lowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * \brief Gives how many values a bucket covers.
+     */
+    public long bucketWidth(int bucket)
+    {
+        return bucket < SUB_BUCKETS ? 1 : 1L << (bucket / SUB_BUCKETS - 1);
+    }
+
+    /**
+     * \brief Finds the bucket a value goes in.
+     * \details The top six bits of the value pick the bucket within
+     *          its power of two.
+     */
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int)(value >>> shift);
+        return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * File output for the logger.
+ * Lines are encoded into a fixed-size buffer which is written out
+ * through a file channel whenever it fills up, or when the flush
+ * interval has passed, so memory use stays the same no matter how long
+ * the simulation runs.
+ */
+
+import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+class LogFileSink
+{
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final long flushIntervalNanos;
+    private long lastFlushTime;
+
+    /**
+     * \brief Opens the log file, replacing anything that was in it.
+     * \param filePath Path of the log file.
+     * \param bufferSize Number of bytes held before they are written out.
+     * \param flushIntervalMillis Longest time a line is held before it is
+     *        written out, or 0 to only write when the buffer is full.
+     */
+    LogFileSink(String filePath, int bufferSize, int flushIntervalMillis)
+        throws FileNotFoundException
+    {
+        channel = new FileOutputStream(filePath).getChannel();
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+        encoder = StandardCharsets.UTF_8.newEncoder();
+        flushIntervalNanos = flushIntervalMillis * 1000000L;
+        lastFlushTime = System.nanoTime();
+    }
+
+    /**
+     * \brief Adds text to the file.
+     * \details The text is written out once the buffer fills up or the
+     *          flush interval has passed. Safe to call from any thread.
+     */
+    public synchronized void write(CharSequence text) throws IOException
+    {
+        CharBuffer chars = CharBuffer.wrap(text);
+
+        while (true)
+        {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow())
+                flush();
+            else if (result.isUnderflow())
+                break;
+            else
+                result.throwException();
+        }
+
+        if (flushIntervalNanos > 0 && System.nanoTime() - lastFlushTime >= flushIntervalNanos)
+            flush();
+    }
+
+    /**
+     * \brief Writes out the buffered text if the flush interval has passed.
+     * \details Lets an idle caller push out lines that would otherwise sit
+     *          in the buffer until the next write.
+     */
+    public synchronized void flushIfDue() throws IOException
+    {
+        if (flushIntervalNanos > 0 && buffer.position() > 0 &&
+            System.nanoTime() - lastFlushTime >= flushIntervalNanos)
+                flush();
+    }
+
+    /**
+     * \brief Writes out everything in the buffer.
+     */
+    public synchronized void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        lastFlushTime = System.nanoTime();
+    }
+
+    /**
+     * \brief Writes out everything in the buffer and closes the file.
+     */
+    public synchronized void close() throws IOException
+    {
+        flush();
+        channel.close();
+    }
+}
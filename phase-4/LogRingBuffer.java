@@ -0,0 +1,129 @@
+/**
+ * Bounded ring buffer of log records for the asynchronous logger.
+ * Each record is stored across a set of primitive arrays instead of
+ * as an object, so publishing a record does not allocate anything.
+ * Any number of threads may publish, a slot is claimed with a single
+ * atomic increment. Only the logger's writer thread consumes records.
+ * If the writer falls behind and the buffer fills up, publishers wait
+ * for a slot to free up rather than dropping records.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+class LogRingBuffer
+{
+    private final int capacity,
+                      mask;
+    private final long[] timeStamps;
+    private final int[] processIDs;
+    private final LogEvent[] events;
+    private final Object[] subjects;
+    private final long[] args;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed;
+    private volatile long consumed;
+
+    /**
+     * \brief LogRingBuffer constructor.
+     * \param minCapacity Minimum number of records, rounded up to a power of two.
+     */
+    LogRingBuffer(int minCapacity)
+    {
+        int size = 1;
+        while (size < minCapacity)
+            size <<= 1;
+
+        capacity = size;
+        mask = size - 1;
+        timeStamps = new long[size];
+        processIDs = new int[size];
+        events = new LogEvent[size];
+        subjects = new Object[size];
+        args = new long[size];
+        published = new AtomicLongArray(size);
+        claimed = new AtomicLong(0);
+        consumed = 0;
+    }
+
+    /**
+     * \brief Adds a record to the buffer.
+     * \details The slot is only marked as published after all of its
+     *          fields are written, so the writer never sees half a record.
+     * \param timeStamp Simulation time of the record (ns).
+     * \param processID Process the record is about, or 0 for the OS.
+     * \param event What happened.
+     * \param subject Message or operation the event refers to.
+     * \param arg Event specific number, such as a device or address.
+     */
+    public void publish(long timeStamp, int processID, LogEvent event, Object subject, long arg)
+    {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= capacity)
+            LockSupport.parkNanos(1000);
+
+        int slot = (int)(sequence & mask);
+        timeStamps[slot] = timeStamp;
+        processIDs[slot] = processID;
+        events[slot] = event;
+        subjects[slot] = subject;
+        args[slot] = arg;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * \brief Checks if the next record is ready to be consumed.
+     */
+    public boolean isNextPublished()
+    {
+        long sequence = consumed;
+        return published.get((int)(sequence & mask)) == sequence + 1;
+    }
+
+    /**
+     * \brief Checks if every claimed record has been consumed.
+     */
+    public boolean isDrained()
+    {
+        return consumed == claimed.get();
+    }
+
+    /**
+     * \brief Getters for the fields of the next record.
+     * \details Only valid while isNextPublished() returns true.
+     */
+    public long nextTimeStamp()
+    {
+        return timeStamps[(int)(consumed & mask)];
+    }
+
+    public int nextProcessID()
+    {
+        return processIDs[(int)(consumed & mask)];
+    }
+
+    public LogEvent nextEvent()
+    {
+        return events[(int)(consumed & mask)];
+    }
+
+    public Object nextSubject()
+    {
+        return subjects[(int)(consumed & mask)];
+    }
+
+    public long nextArg()
+    {
+        return args[(int)(consumed & mask)];
+    }
+
+    /**
+     * \brief Frees the next record's slot for publishers.
+     */
+    public void advance()
+    {
+        subjects[(int)(consumed & mask)] = null;
+        consumed = consumed + 1;
+    }
+}
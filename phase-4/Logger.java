@@ -1,52 +1,94 @@
 /**
  * Logger module for the OS simulation.
- * This is a singleton class meant for global access
- * across all of the simulation's modules.
+ * Each simulation has its own logger, which every one of
+ * the simulation's modules reaches through its context.
+ *
+ * In async mode the callers do not format or print anything. They push
+ * a compact record of the event into a ring buffer, and a single writer
+ * thread turns the records into lines for the monitor and/or file.
  */
 
-import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * \brief Enumeration of the events that get logged.
+ * \details MESSAGE is a free form message, the rest are formatted
+ *          from the process ID, operation and argument of the record.
+ */
+enum LogEvent
+{
+    MESSAGE,
+    PREPARING,
+    STARTING,
+    RESUMING,
+    REMOVING,
+    WAITING,
+    PREEMPTING,
+    STEALING,
+    OPERATION_START,
+    OPERATION_END
+}
 
 public class Logger
 {
-    private static StringBuffer fileBuffer;
-    private static String filePath;
-    private static boolean toMonitor,
-                           toFile;
-    private static Timer masterTimer;
+    private static final long WRITER_IDLE_NANOS = 50000;
+    private static final int MONITOR_BATCH_SIZE = 1 << 16;
+
+    private final SimulationContext context;
+    private LogFileSink fileSink;
+    private boolean toMonitor,
+                    toFile;
+    private final Timer masterTimer;
+    private volatile boolean isAsync = false;
+    private volatile boolean isWriterRunning = false;
+    private LogRingBuffer ringBuffer;
+    private Thread writerThread;
+    private static final String[][] startMessages = buildOperationMessages(true),
+                                     endMessages = buildOperationMessages(false);
 
 
     /**
-     * \brief Initializes the class.
-     * \details Since this class is never instantiate, there is no constructor.
-     *          Therefore, this method must be called before the logger is used.
-     *          This allcates memory to the required objects and sets the configuration.
-     *          This classes initialization depends upon the Configuration's initialization.
+     * \brief Logger constructor.
+     * \details Opens the log file and starts the writer thread, if the
+     *          configuration asks for them. This depends upon the context's
+     *          configuration and clock being created first.
+     * \param context The simulation the logger belongs to.
      */
-    public static void init()
+    Logger(SimulationContext context)
     {
-        masterTimer = new Timer();
-        fileBuffer = new StringBuffer();
-        filePath = new String(Configuration.logFilePath);
+        this.context = context;
+        masterTimer = new Timer(context.clock);
 
-        if (Configuration.logType == LogType.MONITOR)
+        if (context.config.logType == LogType.MONITOR)
         {
             toMonitor = true;
             toFile = false;
         }
-        else if (Configuration.logType == LogType.FILE)
+        else if (context.config.logType == LogType.FILE)
         {
             toMonitor = false;
             toFile = true;
         }
-        else if (Configuration.logType == LogType.BOTH)
+        else if (context.config.logType == LogType.BOTH)
         {
             toMonitor = true;
             toFile = true;
         }
+        else if (context.config.logType == LogType.NONE)
+        {
+            toMonitor = false;
+            toFile = false;
+        }
         else
             logError("Log type not defined");
+
+        if (toFile)
+            openFile();
+
+        if (context.config.logMode == LogMode.ASYNC && (toMonitor || toFile))
+            startWriter();
     }
 
     /**
@@ -57,80 +99,412 @@ public class Logger
      *          contain the same log data.
      * \param msg String that gets sent through.
      */
-    public static void log(String msg)
+    public void log(String msg)
     {
+        if (isAsync)
+        {
+            ringBuffer.publish(masterTimer.getElapsedNanos(), 0, LogEvent.MESSAGE, msg, 0);
+            return;
+        }
+
         double timeStamp = masterTimer.getElapsedTime();
 
         if (toMonitor)
             System.out.println(String.format("%.6f", timeStamp) + " (sec) - " + msg);
 
         if (toFile)
-            fileBuffer.append(String.format("%.6f", timeStamp) + " (sec) - " + msg + "\n");
+            writeToFile(String.format("%.6f", timeStamp) + " (sec) - " + msg + "\n");
+    }
+
+    /**
+     * \brief Logs an event about a process.
+     * \param event What happened.
+     * \param processID The process it happened to.
+     */
+    public void log(LogEvent event, int processID)
+    {
+        log(event, processID, null, 0);
+    }
+
+    /**
+     * \brief Logs an event about a process.
+     * \details In async mode this only records the event, the message
+     *          is built later by the writer thread. The subject must
+     *          not change in a way that affects the message after it
+     *          is logged.
+     * \param event What happened.
+     * \param processID The process it happened to.
+     * \param subject The operation the event refers to, if any.
+     * \param arg Device index, memory address or cycle count.
+     */
+    public void log(LogEvent event, int processID, Object subject, long arg)
+    {
+        // Nothing to write the message to, so do not build it
+        if (!toMonitor && !toFile)
+            return;
+
+        if (isAsync)
+            ringBuffer.publish(masterTimer.getElapsedNanos(), processID, event, subject, arg);
+        else
+            log(formatEvent(event, processID, subject, arg));
     }
 
     /**
      * \brief Starts the master timer for the simulation
      */
-    public static void startMasterTimer()
+    public void startMasterTimer()
     {
         masterTimer.start();
     }
 
     /**
-     * \brief Used to flush the string fileBuffer to the specified logFile
-     * \details The fileBuffer must be converted to bytes before writing
-     *          data to the file.
+     * \brief Used to flush the remaining log lines to the specified logFile
+     * \details Lines are streamed to the file while the simulation runs,
+     *          so this only writes out what is still buffered and closes
+     *          the file. In async mode the writer thread is stopped first,
+     *          once it has written every record that was logged.
      */
-    public static void writeBufferToFile()
+    public void writeBufferToFile()
     {
-        if (!toFile)
-            return;
+        stopWriter();
+        closeFile();
+    }
 
+    /**
+     * \brief Opens the log file for streaming.
+     */
+    private void openFile()
+    {
         try {
-            FileOutputStream outputFile = new FileOutputStream(filePath);
-            byte[] bytes = fileBuffer.toString().getBytes();
-            outputFile.write(bytes);
-            outputFile.close();
+            fileSink = new LogFileSink(context.config.logFilePath,
+                                       context.config.logFileBufferKB * 1024,
+                                       context.config.logFlushInterval);
         } catch (FileNotFoundException e) {
-            Logger.logError("File path was not found");
+            toFile = false;
+            logError("File path was not found");
+        }
+    }
+
+    /**
+     * \brief Adds a line to the log file.
+     * \details If writing fails, file logging is turned off before
+     *          the error is logged so the error does not loop.
+     */
+    private void writeToFile(CharSequence line)
+    {
+        try {
+            fileSink.write(line);
         } catch (IOException e) {
-            Logger.logError("File stream was interrupted");
+            toFile = false;
+            logError("File stream was interrupted");
+        }
+    }
+
+    /**
+     * \brief Writes out whatever is buffered and closes the log file.
+     */
+    private void closeFile()
+    {
+        if (fileSink == null)
+            return;
+
+        LogFileSink sink = fileSink;
+        fileSink = null;
+        toFile = false;
+        try {
+            sink.close();
+        } catch (IOException e) {
+            toFile = false;
+            logError("File stream was interrupted");
         }
     }
 
     /**
      * \brief Used to log any error that might occur throughout the simulation.
-     * \details Flushes to file and exits the program.
+     * \details Flushes to file and fails the simulation, by throwing the
+     *          error on this thread and handing it to every other thread
+     *          the simulation is running on.
      */
-    public static void logError(String errMsg)
+    public void logError(String errMsg)
     {
         log("ERROR: " + errMsg);
         log("ERROR: Exiting with return code 1");
         writeBufferToFile();
-        System.exit(1);
+
+        SimulationException error = new SimulationException(errMsg, true);
+        context.fail(error);
+        throw error;
+    }
+
+    /**
+     * \brief Builds the message for an event.
+     * \param event What happened.
+     * \param processID The process it happened to.
+     * \param subject The message or operation the event refers to.
+     * \param arg Device index, memory address or cycle count.
+     */
+    String formatEvent(LogEvent event, int processID, Object subject, long arg)
+    {
+        switch (event)
+        {
+            case MESSAGE:
+                return (String)subject;
+            case PREPARING:
+                return "OS: preparing process " + processID;
+            case STARTING:
+                return "OS: starting process " + processID + formatCore(arg);
+            case RESUMING:
+                return "OS: resuming process " + processID + formatCore(arg);
+            case REMOVING:
+                return "OS: removing process " + processID;
+            case WAITING:
+                return "OS: process " + processID + " waiting on IO";
+            case PREEMPTING:
+                return "OS: preempting process " + processID + ", " + arg + " cycles remaining";
+            case STEALING:
+                return "OS: core " + ((Core)subject).getCoreID() + " stole process " +
+                       processID + " from core " + arg;
+            case OPERATION_START:
+                return formatOperationStart(processID, (Operation)subject, arg);
+            case OPERATION_END:
+                return formatOperationEnd(processID, (Operation)subject, arg);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * \brief Names the core a process was dispatched to.
+     * \return Nothing when there is only one core.
+     */
+    private String formatCore(long coreID)
+    {
+        if (context.config.processorCores > 1)
+            return " on core " + coreID;
+        else
+            return "";
+    }
+
+    /**
+     * \brief Builds the operation message text for every device and type.
+     * \details Done once so formatting an operation only has to join the
+     *          process ID, the prebuilt text, and a device or address.
+     * \param isStart True for start messages, false for end messages.
+     * \return Message text indexed by device then operation type.
+     */
+    private static String[][] buildOperationMessages(boolean isStart)
+    {
+        Device[] devices = Device.values();
+        OperationType[] types = OperationType.values();
+        String[][] messages = new String[devices.length][types.length];
+
+        for (Device device : devices)
+        {
+            for (OperationType type : types)
+            {
+                String token = new Operation(type, device, 0).typeToToken();
+                String text;
+
+                if (device == Device.ALLOCATE)
+                    text = isStart ? ": allocating " + token : ": memory allocated at ";
+                else if (device == Device.PROCESSOR)
+                    text = isStart ? ": start processing action" : ": end processing action";
+                else
+                    text = (isStart ? ": start " : ": end ") + device.label + " " + token;
+
+                if (isStart && device.unitTag != null)
+                    text += " on " + device.unitTag + " ";
+
+                messages[device.ordinal()][type.ordinal()] = text;
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * \brief Builds the message for the start of an operation.
+     * \param device The device index for projectors and hard drives.
+     */
+    private String formatOperationStart(int processID, Operation op, long device)
+    {
+        String text = startMessages[op.device.ordinal()][op.type.ordinal()];
+
+        if (op.device.unitTag != null)
+            return "Process " + processID + text + device;
+        else
+            return "Process " + processID + text;
+    }
+
+    /**
+     * \brief Builds the message for the end of an operation.
+     * \param address The allocated address for memory allocations.
+     */
+    private String formatOperationEnd(int processID, Operation op, long address)
+    {
+        String text = endMessages[op.device.ordinal()][op.type.ordinal()];
+
+        if (op.device == Device.ALLOCATE)
+            return "Process " + processID + text + Memory.formatAddress(address);
+        else
+            return "Process " + processID + text;
+    }
+
+    /**
+     * \brief Starts the writer thread for async mode.
+     */
+    private void startWriter()
+    {
+        ringBuffer = new LogRingBuffer(Math.max(1, context.config.logBufferSize));
+        isWriterRunning = true;
+        writerThread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    runWriter();
+                }
+            }, "log-writer"
+        );
+        writerThread.setDaemon(true);
+        writerThread.start();
+        isAsync = true;
+    }
+
+    /**
+     * \brief Stops the writer thread once every record has been written.
+     * \details Anything logged afterwards is written synchronously.
+     */
+    private void stopWriter()
+    {
+        if (writerThread == null)
+            return;
+
+        isAsync = false;
+        isWriterRunning = false;
+        LockSupport.unpark(writerThread);
+        // An error on the writer thread itself fails the simulation from there
+        if (Thread.currentThread() == writerThread)
+        {
+            writerThread = null;
+            return;
+        }
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while waiting on the log writer");
+        }
+        writerThread = null;
+    }
+
+    /**
+     * \brief Main loop of the writer thread.
+     * \details Records are formatted in order and written out in batches.
+     *          When there is nothing to write, the thread parks for a short
+     *          while instead of spinning.
+     */
+    private void runWriter()
+    {
+        StringBuilder monitorBatch = new StringBuilder(MONITOR_BATCH_SIZE);
+        StringBuilder line = new StringBuilder(128);
+
+        while (isWriterRunning || !ringBuffer.isDrained())
+        {
+            if (!ringBuffer.isNextPublished())
+            {
+                flushMonitorBatch(monitorBatch);
+                if (toFile)
+                    flushFileIfDue();
+                LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                continue;
+            }
+
+            line.setLength(0);
+            appendTimeStamp(line, ringBuffer.nextTimeStamp());
+            line.append(" (sec) - ");
+            line.append(formatEvent(ringBuffer.nextEvent(), ringBuffer.nextProcessID(),
+                                    ringBuffer.nextSubject(), ringBuffer.nextArg()));
+            line.append('\n');
+            ringBuffer.advance();
+
+            if (toMonitor)
+            {
+                monitorBatch.append(line);
+                if (monitorBatch.length() >= MONITOR_BATCH_SIZE)
+                    flushMonitorBatch(monitorBatch);
+            }
+
+            if (toFile)
+                writeToFile(line);
+        }
+
+        flushMonitorBatch(monitorBatch);
+    }
+
+    /**
+     * \brief Writes out the log file's buffer if the flush interval has passed.
+     */
+    private void flushFileIfDue()
+    {
+        try {
+            fileSink.flushIfDue();
+        } catch (IOException e) {
+            toFile = false;
+            logError("File stream was interrupted");
+        }
+    }
+
+    /**
+     * \brief Prints the lines collected for the monitor.
+     */
+    private static void flushMonitorBatch(StringBuilder monitorBatch)
+    {
+        if (monitorBatch.length() == 0)
+            return;
+
+        System.out.print(monitorBatch);
+        System.out.flush();
+        monitorBatch.setLength(0);
+    }
+
+    /**
+     * \brief Appends a timestamp in seconds with six decimal places.
+     * \details Gives the same result as formatting the seconds with
+     *          "%.6f", without going through String.format().
+     * \param nanos The timestamp (ns).
+     */
+    private static void appendTimeStamp(StringBuilder line, long nanos)
+    {
+        long micros = (nanos + 500) / 1000;
+        long fraction = micros % 1000000;
+
+        line.append(micros / 1000000).append('.');
+        for (long digit = 100000; digit > 1 && fraction < digit; digit /= 10)
+            line.append('0');
+        line.append(fraction);
     }
 
     /**
      * \brief Logs the configuration before the OS simulation runs
      */
-    private static void outputConfiguration()
+    private void outputConfiguration()
     {
         log("Configuration File Data:\n" +
-            "Monitor : " + Configuration.monitorTime + " ms/cycle\n" +
-            "Processor : " + Configuration.processorTime + " ms/cycle\n" +
-            "Scanner : " + Configuration.scannerTime + " ms/cycle\n" +
-            "Hard Drive : " + Configuration.hardDriveTime + " ms/cycle\n" +
-            "Keyboard : " + Configuration.keyboardTime + " ms/cycle\n" +
-            "Memory : " + Configuration.memoryTime + " ms/cycle\n" +
-            "Projector : " + Configuration.projectorTime + " ms/cycle\n" +
-	        "System memory : " + Configuration.totalSystemMemoryKB + " kbytes\n" +
-            "Block size : " + Configuration.memoryBlockSize + " bits");
-
-        if (Configuration.logType == LogType.MONITOR)
+            "Monitor : " + context.config.monitorTime + " ms/cycle\n" +
+            "Processor : " + context.config.processorTime + " ms/cycle\n" +
+            "Scanner : " + context.config.scannerTime + " ms/cycle\n" +
+            "Hard Drive : " + context.config.hardDriveTime + " ms/cycle\n" +
+            "Keyboard : " + context.config.keyboardTime + " ms/cycle\n" +
+            "Memory : " + context.config.memoryTime + " ms/cycle\n" +
+            "Projector : " + context.config.projectorTime + " ms/cycle\n" +
+	        "System memory : " + context.config.totalSystemMemoryKB + " kbytes\n" +
+            "Block size : " + context.config.memoryBlockSize + " bits");
+
+        if (context.config.logType == LogType.MONITOR)
             log("Logged to : Monitor\n");
-        else if (Configuration.logType == LogType.FILE)
-            log("Logged to : " + Configuration.logFilePath + "\n");
-        else if (Configuration.logType == LogType.BOTH)
-            log("Logged to : Monitor and " + Configuration.logFilePath + "\n");
+        else if (context.config.logType == LogType.FILE)
+            log("Logged to : " + context.config.logFilePath + "\n");
+        else if (context.config.logType == LogType.BOTH)
+            log("Logged to : Monitor and " + context.config.logFilePath + "\n");
     }
 }
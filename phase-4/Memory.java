@@ -1,34 +1,216 @@
 /**
- * Simple memory allocator used in the context of the
- * simulator. It generates an address counting upword in
- * increments of specified by total block size in the configuration
- * file.
+ * Memory allocator used in the context of the simulator.
+ * Memory is split into blocks of the size given in the configuration
+ * file, and the allocator keeps track of which process owns each one,
+ * so a process's blocks are freed when it terminates and nobody else's
+ * are.
+ *
+ * Free blocks are tracked in a bitmap with summary levels on top of it,
+ * where each bit says whether the word below it has any free block. An
+ * allocation walks down from the top level to the lowest free block, so
+ * it takes O(log n) steps, with a base of 64, however many blocks there are.
  */
 
 public class Memory
 {
-    private static int availableMemoryBits = Configuration.totalSystemMemoryKB * 8000;
-    private static int blockSize = Configuration.memoryBlockSize;
-    private static int currMemoryLocation = 0x0;
+    private static final int WORD_BITS = 64;
+    private static final int WORD_SHIFT = 6;
+
+    private final SimulationContext context;
+    private long[][] freeBits;
+    private int[] owners;
+    private long numBlocks;
+    private long blockSize;
+    private long numUsedBlocks,
+                 peakUsedBlocks,
+                 numFreeRuns,
+                 peakFreeRuns;
+    private double peakFragmentation;
+    private long numAllocations,
+                 totalAllocationNanos,
+                 maxAllocationNanos;
+
+    /**
+     * \brief Memory constructor.
+     * \details Every block starts out free. This depends upon the
+     *          context's configuration and logger being created first.
+     * \param context The simulation the memory belongs to.
+     */
+    Memory(SimulationContext context)
+    {
+        this.context = context;
+        blockSize = Math.max(1, context.config.memoryBlockSize);
+        numBlocks = (long)context.config.totalSystemMemoryKB * 8000 / blockSize;
+        if (numBlocks > Integer.MAX_VALUE)
+            context.logger.logError("System memory has too many blocks");
+
+        int levels = 1;
+        for (long size = numBlocks; size > WORD_BITS; size = (size + WORD_BITS - 1) >> WORD_SHIFT)
+            levels++;
+
+        freeBits = new long[levels][];
+        long size = numBlocks;
+        for (int level = 0; level < levels; level++)
+        {
+            freeBits[level] = new long[(int)Math.max(1, (size + WORD_BITS - 1) >> WORD_SHIFT)];
+            for (long i = 0; i < size; i++)
+                freeBits[level][(int)(i >> WORD_SHIFT)] |= 1L << i;
+            size = (size + WORD_BITS - 1) >> WORD_SHIFT;
+        }
+
+        owners = new int[(int)numBlocks];
+        numUsedBlocks = 0;
+        peakUsedBlocks = 0;
+        numFreeRuns = numBlocks > 0 ? 1 : 0;
+        peakFreeRuns = numFreeRuns;
+        peakFragmentation = 0.0;
+        numAllocations = 0;
+        totalAllocationNanos = 0;
+        maxAllocationNanos = 0;
+    }
+
+    /**
+     * \brief Allocates the lowest free block to a process.
+     * \param processID The process that owns the block.
+     * \return The starting address of the allocation.
+     */
+    public synchronized long allocate(int processID)
+    {
+        boolean isTimed = !context.clock.isVirtual();
+        long startTime = isTimed ? System.nanoTime() : 0;
+
+        if (numUsedBlocks == numBlocks)
+            context.logger.logError("Exceeded system memory");
+
+        int index = 0;
+        for (int level = freeBits.length - 1; level >= 0; level--)
+            index = (index << WORD_SHIFT) + Long.numberOfTrailingZeros(freeBits[level][index]);
+
+        setFree(index, false);
+        owners[index] = processID;
+        numUsedBlocks++;
+        updateFreeRuns(index, false);
+        peakUsedBlocks = Math.max(peakUsedBlocks, numUsedBlocks);
+
+        long elapsed = isTimed ? System.nanoTime() - startTime : 0;
+        numAllocations++;
+        totalAllocationNanos += elapsed;
+        maxAllocationNanos = Math.max(maxAllocationNanos, elapsed);
+
+        return index * blockSize;
+    }
 
     /**
-     * \brief Incrementally allocates memory.
-     * \details The size of the block depends on the block size
-     *          specified within the configuration file.
-     * \return A string containing the starting hex address of the
-     *         allocation.
+     * \brief Frees a block that was allocated to a process.
+     * \param processID The process that owns the block.
+     * \param address The address returned when it was allocated.
      */
-    public static String allocate()
+    public synchronized void free(int processID, long address)
     {
-        if (currMemoryLocation > (availableMemoryBits - blockSize))
-            Logger.logError("Exceeded system memory");
-        String hexAddress = String.format("%08x", currMemoryLocation);
-        currMemoryLocation += blockSize;
-        return "0x" + hexAddress;
+        long index = address / blockSize;
+        if (address % blockSize != 0 || index < 0 || index >= numBlocks ||
+            owners[(int)index] != processID)
+                context.logger.logError("Process " + processID + " freed memory it does not own");
+
+        owners[(int)index] = 0;
+        setFree((int)index, true);
+        numUsedBlocks--;
+        updateFreeRuns((int)index, true);
+    }
+
+    /**
+     * \brief Gives the number of blocks memory is split into.
+     */
+    public synchronized long getNumBlocks()
+    {
+        return numBlocks;
+    }
+
+    /**
+     * \brief Formats an address for the log.
+     * \return A string containing the hex address.
+     */
+    public static String formatAddress(long address)
+    {
+        return "0x" + String.format("%08x", address);
+    }
+
+    /**
+     * \brief Describes how memory was used over the simulation.
+     * \details Fragmentation is how broken up the free memory is, from
+     *          0% when it is all in one piece, to 100% when no two free
+     *          blocks are next to each other. The highest it got during
+     *          the run is reported, since everything is free at the end.
+     *          The allocation latency is wall clock time, so it is left
+     *          out in virtual mode, where the same run must always give
+     *          the same report.
+     */
+    public synchronized String getReport()
+    {
+        double averageNanos = numAllocations == 0 ? 0.0 :
+                              (double)totalAllocationNanos / numAllocations;
+
+        String report = "memory " + numAllocations + " allocations, peak " + peakUsedBlocks +
+                        " of " + numBlocks + " blocks, peak fragmentation " +
+                        String.format("%.1f", 100.0 * peakFragmentation) + "% (" +
+                        peakFreeRuns + " free runs)";
+        if (context.clock.isVirtual())
+            return report;
+
+        return report + ", allocation latency avg " + String.format("%.0f", averageNanos) +
+               " ns, max " + maxAllocationNanos + " ns";
+    }
+
+    /**
+     * \brief Marks a block as free or used on every level of the bitmap.
+     * \details A summary bit is only changed when the word below it
+     *          goes from having free blocks to having none, or back.
+     */
+    private void setFree(int index, boolean isFree)
+    {
+        for (int level = 0; level < freeBits.length; level++)
+        {
+            long[] words = freeBits[level];
+            int word = index >> WORD_SHIFT;
+            boolean wasEmpty = words[word] == 0;
+
+            if (isFree)
+                words[word] |= 1L << index;
+            else
+                words[word] &= ~(1L << index);
+
+            if (wasEmpty == (words[word] == 0))
+                return;
+            index = word;
+        }
+    }
+
+    /**
+     * \brief Keeps count of the runs of free blocks as a block changes.
+     * \details Only the two neighbours of the block need to be checked,
+     *          so this stays constant time.
+     */
+    private void updateFreeRuns(int index, boolean isFree)
+    {
+        int freeNeighbours = 0;
+        if (index > 0 && isBlockFree(index - 1))
+            freeNeighbours++;
+        if (index < numBlocks - 1 && isBlockFree(index + 1))
+            freeNeighbours++;
+
+        // A lone block makes or removes a run, a block joining two runs does the opposite
+        long change = 1 - freeNeighbours;
+        numFreeRuns += isFree ? change : -change;
+        peakFreeRuns = Math.max(peakFreeRuns, numFreeRuns);
+
+        long numFreeBlocks = numBlocks - numUsedBlocks;
+        if (numFreeBlocks > 1)
+            peakFragmentation = Math.max(peakFragmentation,
+                                         (double)(numFreeRuns - 1) / (numFreeBlocks - 1));
     }
 
-    public static void free()
+    private boolean isBlockFree(int index)
     {
-        currMemoryLocation = 0x0;
+        return (freeBits[0][index >> WORD_SHIFT] & (1L << index)) != 0;
     }
-}
\ No newline at end of file
+}
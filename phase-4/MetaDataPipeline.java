@@ -0,0 +1,150 @@
+/**
+ * Hands processes from a parser thread to the simulation as they are read.
+ * Reading a large meta data file takes a while, and the simulation used
+ * to wait for all of it before anything ran. With a pipeline the file
+ * is read on a thread of its own, each process is put into a bounded
+ * queue as soon as its application finish operation is read, and the OS
+ * takes processes off the queue as it admits them. The simulation starts
+ * once the first few processes are read, and the parser never gets more
+ * than the queue's capacity ahead of it, so only that many processes
+ * that have yet to be admitted are ever in memory.
+ *
+ * A parse error on the parser thread fails the simulation like an error
+ * on any other thread, and so does any other exception it throws. Since
+ * the rest of the file is read while the simulation runs, an error late
+ * in the file is found part way through.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+class MetaDataPipeline implements Iterator<ProcessControlBlock>, Consumer<ProcessControlBlock>
+{
+    private static final long POLL_MSEC = 10;
+
+    private final SimulationContext context;
+    private final BlockingQueue<ProcessControlBlock> queue;
+    private final ProcessControlBlock end;
+    private volatile boolean isClosed;
+    private ProcessControlBlock next;
+
+    /**
+     * \brief MetaDataPipeline constructor.
+     * \param context The simulation the processes are read for.
+     * \param capacity The most processes that can be read but not taken.
+     */
+    MetaDataPipeline(SimulationContext context, int capacity)
+    {
+        this.context = context;
+        this.queue = new ArrayBlockingQueue<ProcessControlBlock>(capacity);
+        this.end = new ProcessControlBlock(context, 0, State.TERMINATED);
+        this.isClosed = false;
+        this.next = null;
+    }
+
+    /**
+     * \brief Starts reading on the parser thread.
+     * \param reader Reads the meta data and hands each process to accept().
+     *        The end of the pipeline is marked once it returns.
+     */
+    public void start(final Runnable reader)
+    {
+        Thread parser = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try {
+                        reader.run();
+                    } catch (SimulationException e) {
+                        // Already handed to the context, or the pipeline was closed
+                    } catch (RuntimeException e) {
+                        context.fail(new SimulationException("Meta data parser failed: " + e));
+                    } finally {
+                        finish();
+                    }
+                }
+            }, "metadata-parser"
+        );
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    /**
+     * \brief Marks the end of the pipeline, however the parser stopped.
+     * \details Nothing is left waiting for a process that never comes,
+     *          even if the parser failed part way.
+     */
+    private void finish()
+    {
+        try {
+            accept(end);
+        } catch (SimulationException e) {
+            // The pipeline was closed, so nothing is waiting
+        }
+    }
+
+    /**
+     * \brief Called on the parser thread with each process it has read.
+     * \details Waits while the queue is full.
+     * \throws SimulationException If the pipeline is closed while it waits.
+     */
+    public void accept(ProcessControlBlock pcb)
+    {
+        try {
+            while (!queue.offer(pcb, POLL_MSEC, TimeUnit.MILLISECONDS))
+            {
+                if (isClosed)
+                    throw new SimulationException("Meta data pipeline was closed", true);
+            }
+        } catch (InterruptedException e) {
+            throw new SimulationException("Meta data pipeline was interrupted", true);
+        }
+    }
+
+    /**
+     * \brief Checks if there is another process, waiting for it to be read.
+     * \details Stops waiting if the simulation fails, and throws its error.
+     */
+    public boolean hasNext()
+    {
+        while (next == null)
+        {
+            context.checkFailed();
+            try {
+                next = queue.poll(POLL_MSEC, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                context.logger.logError("OS was interrupted while waiting on the meta data");
+            }
+        }
+
+        return next != end;
+    }
+
+    /**
+     * \brief Takes the next process, waiting for it to be read.
+     */
+    public ProcessControlBlock next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        ProcessControlBlock pcb = next;
+        next = null;
+        return pcb;
+    }
+
+    /**
+     * \brief Stops the parser thread if it is still reading.
+     * \details Called once the simulation is over, or when it fails. The
+     *          parser stops the next time it waits for room in the queue,
+     *          rather than being interrupted while it reads the file.
+     */
+    public void close()
+    {
+        isClosed = true;
+    }
+}
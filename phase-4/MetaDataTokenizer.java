@@ -0,0 +1,304 @@
+/**
+ * Tokenizer for the meta data file.
+ * Reads the file through a buffered byte channel in a single pass.
+ * Operation names are matched against the device names byte by byte, so
+ * no strings are created while parsing. The line and column of every
+ * operation is tracked so errors can point at the problem.
+ */
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+class MetaDataTokenizer
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_NAME_LENGTH = 32;
+    private static final Device[] DEVICES = Device.values();
+    private static final byte[][] NAME_BYTES = new byte[DEVICES.length][];
+
+    static
+    {
+        for (int i = 0; i < DEVICES.length; i++)
+            NAME_BYTES[i] = DEVICES[i].label.getBytes();
+    }
+
+    private final SimulationContext context;
+    private FileChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    private int position,
+                limit;
+    private boolean isEndOfInput,
+                    isEndOfData;
+
+    private final byte[] nameBuffer;
+    private int line,
+                column,
+                tokenLine,
+                tokenColumn;
+
+    private OperationType type;
+    private Device device;
+    private int numCycles;
+
+    /**
+     * \brief Opens the meta data file and checks the start prompt.
+     * \param context The simulation the meta data is loaded into.
+     * \param filePath Path to the meta data file.
+     */
+    MetaDataTokenizer(SimulationContext context, String filePath)
+    {
+        this.context = context;
+        buffer = new byte[BUFFER_SIZE];
+        byteBuffer = ByteBuffer.wrap(buffer);
+        nameBuffer = new byte[MAX_NAME_LENGTH];
+        position = 0;
+        limit = 0;
+        line = 1;
+        column = 0;
+
+        try {
+            channel = new FileInputStream(filePath).getChannel();
+        } catch (FileNotFoundException e) {
+            context.logger.logError("Meta data file not found");
+        }
+
+        readStartPrompt();
+    }
+
+    /**
+     * \brief Moves to the next operation in the file.
+     * \details An operation looks like P{run}11 and is followed by
+     *          either a semicolon, or a period for the last one.
+     * \return False once the last operation has been read.
+     */
+    public boolean next()
+    {
+        if (isEndOfData)
+            return false;
+
+        int c = skipWhitespace();
+        if (c == -1)
+            return false;
+
+        tokenLine = line;
+        tokenColumn = column;
+        type = byteToType(c);
+
+        if (read() != '{')
+            error("Expected '{' after operation type");
+
+        device = readName();
+
+        c = read();
+        if (c < '0' || c > '9')
+            error("Expected number of cycles");
+
+        long cycles = 0;
+        while (c >= '0' && c <= '9')
+        {
+            cycles = cycles * 10 + (c - '0');
+            if (cycles > Integer.MAX_VALUE)
+                error("Number of cycles is too large");
+            c = read();
+        }
+        numCycles = (int)cycles;
+
+        while (c == ' ' || c == '\t')
+            c = read();
+
+        if (c == '.')
+            isEndOfData = true;
+        else if (c != ';')
+            error("Expected ';' or '.' after operation");
+
+        return true;
+    }
+
+    /**
+     * \brief Getter for the current operation's type.
+     */
+    public OperationType getType()
+    {
+        return type;
+    }
+
+    /**
+     * \brief Getter for the device the current operation uses.
+     */
+    public Device getDevice()
+    {
+        return device;
+    }
+
+    /**
+     * \brief Getter for the current operation's number of cycles.
+     */
+    public int getNumCycles()
+    {
+        return numCycles;
+    }
+
+    /**
+     * \brief Logs an error at the position of the current operation.
+     * \param msg Description of the problem.
+     */
+    public void error(String msg)
+    {
+        context.logger.logError("Meta data line " + tokenLine + ", column " + tokenColumn + ": " + msg);
+    }
+
+    /**
+     * \brief Closes the meta data file.
+     */
+    public void close()
+    {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            context.logger.logError("IO failed on " + context.config.mdfPath);
+        }
+    }
+
+    /**
+     * \brief Checks for the start prompt and skips the rest of its line.
+     */
+    private void readStartPrompt()
+    {
+        int c = skipWhitespace();
+        tokenLine = line;
+        tokenColumn = column;
+
+        byte[] prompt = { 'S', 't', 'a', 'r', 't' };
+        for (int i = 0; i < prompt.length; i++)
+        {
+            if (c != prompt[i])
+                context.logger.logError("Meta data file does not contain start prompt");
+            c = read();
+        }
+
+        while (c != '\n' && c != -1)
+            c = read();
+    }
+
+    /**
+     * \brief Reads an operation name up to the closing brace.
+     * \return The device whose name matches.
+     */
+    private Device readName()
+    {
+        int length = 0;
+        int c = read();
+
+        while (c != '}')
+        {
+            if (c == -1 || c == '\n' || c == ';')
+                error("Expected '}' after operation name");
+            if (length == MAX_NAME_LENGTH)
+                error("Operation name is too long");
+            nameBuffer[length++] = (byte)c;
+            c = read();
+        }
+
+        for (int i = 0; i < NAME_BYTES.length; i++)
+        {
+            byte[] candidate = NAME_BYTES[i];
+            if (candidate.length != length)
+                continue;
+
+            int j = 0;
+            while (j < length && candidate[j] == nameBuffer[j])
+                j++;
+            if (j == length)
+                return DEVICES[i];
+        }
+
+        error("Unknown operation name");
+        return null;
+    }
+
+    /**
+     * \brief Converts the operation type character to its type.
+     */
+    private OperationType byteToType(int c)
+    {
+        switch (c)
+        {
+            case 'S': return OperationType.SYSTEM;
+            case 'A': return OperationType.APP;
+            case 'P': return OperationType.PROCESS;
+            case 'I': return OperationType.INPUT;
+            case 'O': return OperationType.OUTPUT;
+            case 'M': return OperationType.MEMORY;
+        }
+
+        error("Not a valid operation type");
+        return null;
+    }
+
+    /**
+     * \brief Skips spaces, tabs and line breaks.
+     * \return The first character that is not whitespace, or -1 at the end.
+     */
+    private int skipWhitespace()
+    {
+        int c = read();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n')
+            c = read();
+        return c;
+    }
+
+    /**
+     * \brief Reads the next byte, refilling the buffer when it runs out.
+     * \return The byte, or -1 at the end of the file.
+     */
+    private int read()
+    {
+        if (position == limit && !fill())
+            return -1;
+
+        int c = buffer[position++];
+        if (c == '\n')
+        {
+            line++;
+            column = 0;
+        }
+        else
+            column++;
+
+        return c;
+    }
+
+    /**
+     * \brief Reads the next chunk of the file into the buffer.
+     * \return False if there is nothing left to read.
+     */
+    private boolean fill()
+    {
+        if (isEndOfInput)
+            return false;
+
+        try {
+            byteBuffer.clear();
+            int count = channel.read(byteBuffer);
+            while (count == 0)
+                count = channel.read(byteBuffer);
+
+            if (count < 0)
+            {
+                isEndOfInput = true;
+                return false;
+            }
+
+            position = 0;
+            limit = count;
+        } catch (IOException e) {
+            context.logger.logError("IO failed on " + context.config.mdfPath);
+        }
+
+        return true;
+    }
+}
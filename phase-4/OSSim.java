@@ -10,6 +10,12 @@ class OSSim
 {
     private static final int REQUIRED_ARGS = 1;
 
+    /**
+     * \brief Runs the simulation the configuration file describes.
+     * \details The simulation throws when it fails, and this is the
+     *          only place that exits with an error. Errors the
+     *          simulation did not expect are reported the same way.
+     */
     public static void main(String[] args)
     {
         if (args.length != REQUIRED_ARGS)
@@ -18,7 +24,15 @@ class OSSim
             System.exit(1);
         }
 
-        OperatingSystem os = new OperatingSystem(args[0]);
-        os.simulate();
+        try {
+            new SimulationContext(args[0]).run();
+        } catch (SimulationException e) {
+            if (!e.isLogged())
+                System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (RuntimeException e) {
+            System.err.println("Simulation failed: " + e);
+            System.exit(1);
+        }
     }
 }
\ No newline at end of file
@@ -3,241 +3,648 @@
  * other OS modules. This drives the simulation and reads the metadata.
  */
 
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.LinkedList;
-import java.util.Scanner;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 class OperatingSystem
 {
-    private PriorityQueue<ProcessControlBlock> priorityQueue; // used for PS and SJF
-    private Queue<ProcessControlBlock> fifoQueue;
+    private final SimulationContext context;
+    private Core[] cores;
+    private int nextCore;
+    private int numProcesses;
+    private long makespan,
+                 cpuTime;
+    private final AtomicInteger numProcessesLeft = new AtomicInteger(0),
+                                numUnstarted = new AtomicInteger(0);
+    private final Object workLock = new Object();
+    private Iterator<ProcessControlBlock> pendingProcesses;
+    private int admissionWindow,
+                admissionLimit;
+    private MetaDataPipeline pipeline;
     private boolean isMetaDataLoaded,
                     foundSystemBegin,
                     foundSystemFinish;
-    private final Operation beginOperation = new Operation(OperationType.SYSTEM, "begin", 0),
-                            finishOperation = new Operation(OperationType.SYSTEM, "finish", 0);
+    private final Operation beginOperation = new Operation(OperationType.SYSTEM, Device.BEGIN, 0),
+                            finishOperation = new Operation(OperationType.SYSTEM, Device.FINISH, 0);
 
     /**
      * \brief Class constructor.
      * \details The meta data is read upon creation.
      *          The status flag is stored in an instance variable.
+     * \param context The simulation the OS runs in.
      */
-    OperatingSystem(String configFilePath)
+    OperatingSystem(SimulationContext context)
     {
-        Configuration.init(configFilePath);
-        Logger.init();
-        ResourceManager.init();
+        this.context = context;
+        context.setOperatingSystem(this);
 
         foundSystemBegin  = false;
         foundSystemFinish = false;
-        priorityQueue = new PriorityQueue<ProcessControlBlock>(100);
-        fifoQueue = new LinkedList<ProcessControlBlock>();
+        cores = new Core[context.config.processorCores];
+        for (int i = 0; i < cores.length; i++)
+            cores[i] = new Core(i + 1, this, Scheduler.forName(context.config.scheduleCode));
+        nextCore = 0;
+        numProcesses = 0;
+        makespan = 0;
+        cpuTime = 0;
+        pendingProcesses = null;
+        admissionWindow = 0;
+        admissionLimit = 0;
+        pipeline = null;
         readMetaData();
     }
 
     /**
      * \brief Loads meta data into OS environment;
-     * \details Using regular expressions, I was able to parse
-     *          the file into tokens, each one containing the data
-     *          needed to define an operation.
+     * \details The file is read in a single pass by the tokenizer,
+     *          which hands back one operation at a time. With a look-ahead
+     *          window, the file is read on a parser thread while the
+     *          simulation runs, and only the first processes, up to the
+     *          window, are admitted now. The rest are admitted as the
+     *          first ones start, so there are always as many that have
+     *          yet to run as the window allows.
      */
     public void readMetaData()
     {
-        FileInputStream metaDataFile = null;
-        String filePath = Configuration.mdfPath;
+        final String filePath = context.config.mdfPath;
+        int lookAhead = context.config.lookAhead;
 
         if (filePath.isEmpty())
-            Logger.logError("No meta data path found");
+            context.logger.logError("No meta data path found");
 
-        try {
-            metaDataFile = new FileInputStream(filePath);
-        } catch (FileNotFoundException e) {
-            Logger.logError("Meta data file not found");
+        if (CompiledWorkload.isCompiled(filePath))
+        {
+            loadCompiledWorkload(filePath);
+            return;
         }
-        Scanner metaDataScanner = new Scanner(metaDataFile).useDelimiter("; |;\n|:\n|\\.");
-        ProcessControlBlock currPCB = null;
-        int appCount = 0;
-
-        if (!metaDataScanner.next().contains("Start"))
-            Logger.logError("Meta data file does not contain start prompt");
 
-        while (metaDataScanner.hasNext())
+        if (WorkloadGenerator.isSpecification(filePath))
         {
-            Operation currOperation = extractOperation(metaDataScanner);
+            loadGeneratedWorkload(filePath);
+            return;
+        }
 
-            // Found system begin operation
-            if (currOperation.equals(beginOperation))
-                foundSystemBegin = true;
+        if (lookAhead > 0)
+        {
+            final MetaDataPipeline pipeline = new MetaDataPipeline(context, lookAhead);
+            this.pipeline = pipeline;
+            pipeline.start(new Runnable()
+                {
+                    public void run()
+                    {
+                        parseMetaData(filePath, pipeline);
+                    }
+                }
+            );
+            startAdmitting(pipeline, lookAhead, context.config.admissionLimit);
+            return;
+        }
 
-            // Found system finish operation
-            else if (currOperation.equals(finishOperation))
+        parseMetaData(filePath, new Consumer<ProcessControlBlock>()
             {
-                foundSystemFinish = true;
-                break;
+                public void accept(ProcessControlBlock pcb)
+                {
+                    admit(pcb);
+                }
             }
+        );
+    }
 
-            // System begin operation does not exist
-            else if (!foundSystemBegin)
-                Logger.logError("Missing OS system start operation");
+    /**
+     * \brief Reads a meta data file, handing each process on as it is finished.
+     * \param filePath The meta data file.
+     * \param loaded Given each process once its application finish
+     *        operation is read, in the order they appear.
+     */
+    private void parseMetaData(String filePath, Consumer<ProcessControlBlock> loaded)
+    {
+        MetaDataTokenizer tokenizer = new MetaDataTokenizer(context, filePath);
+        ProcessControlBlock currPCB = null;
+        int appCount = 0;
 
-            // Handling application processes
-            else if (currOperation.type == OperationType.APP)
+        // A closed pipeline stops the parser part way, by throwing from loaded
+        try {
+            while (tokenizer.next())
             {
-                if (currOperation.name.equals("begin"))
+                Operation currOperation = new Operation(tokenizer.getType(), tokenizer.getDevice(),
+                                                        tokenizer.getNumCycles());
+
+                // Found system begin operation
+                if (currOperation.equals(beginOperation))
+                    foundSystemBegin = true;
+
+                // Found system finish operation
+                else if (currOperation.equals(finishOperation))
                 {
-                    currPCB = new ProcessControlBlock(++appCount, State.NEW);
+                    foundSystemFinish = true;
+                    break;
                 }
 
-                else if (currOperation.name.equals("finish"))
+                // System begin operation does not exist
+                else if (!foundSystemBegin)
+                    tokenizer.error("Missing OS system start operation");
+
+                // Handling application processes
+                else if (currOperation.type == OperationType.APP)
                 {
-                    if (Configuration.scheduleType == ScheduleType.FCFS)
-                        fifoQueue.add(currPCB);
-                    else if (Configuration.scheduleType == ScheduleType.PS ||
-                             Configuration.scheduleType == ScheduleType.SJF)
-                        priorityQueue.add(currPCB);
+                    if (currOperation.device == Device.BEGIN)
+                    {
+                        currPCB = new ProcessControlBlock(context, ++appCount, State.NEW);
+                    }
+
+                    else if (currOperation.device == Device.FINISH)
+                    {
+                        if (currPCB == null)
+                            tokenizer.error("Application finished before it started");
+
+                        currPCB.finishLoading();
+                        loaded.accept(currPCB);
+                        currPCB = null;
+                    }
                 }
+
+                // Add operation to current application
+                else if (currOperation.type == OperationType.PROCESS ||
+                         currOperation.type == OperationType.INPUT ||
+                         currOperation.type == OperationType.OUTPUT ||
+                         currOperation.type == OperationType.MEMORY)
+                {
+                    if (currPCB == null)
+                        tokenizer.error("No application created for current operations");
+
+                    if (currOperation.type == OperationType.INPUT ||
+                        currOperation.type == OperationType.OUTPUT)
+                            currPCB.incrementNumIO();
+
+                    currPCB.incrementNumOperations();
+
+                    currPCB.addOperation(currOperation);
+                }
+
+                else
+                    tokenizer.error("Operation is not valid");
             }
+        } finally {
+            tokenizer.close();
+        }
+    }
 
-            // Add operation to current application
-            else if (currOperation.type == OperationType.PROCESS ||
-                     currOperation.type == OperationType.INPUT ||
-                     currOperation.type == OperationType.OUTPUT ||
-                     currOperation.type == OperationType.MEMORY)
+    /**
+     * \brief Loads a workload compiled by WorkloadCompiler.
+     * \details The file was checked when it was compiled, so the
+     *          processes come out ready to run without any parsing.
+     *          With a look-ahead window they are loaded as they are
+     *          admitted, the same way a meta data file is.
+     */
+    private void loadCompiledWorkload(String filePath)
+    {
+        final CompiledWorkload workload = new CompiledWorkload(context, filePath);
+        int lookAhead = context.config.lookAhead;
+
+        if (lookAhead > 0)
+        {
+            startAdmitting(new Iterator<ProcessControlBlock>()
             {
-                if (currPCB == null)
-                    Logger.logError("No application created for current operations");
+                private int next = 0;
+
+                public boolean hasNext()
+                {
+                    return next < workload.getNumProcesses();
+                }
+
+                public ProcessControlBlock next()
+                {
+                    return workload.loadProcess(next++);
+                }
+            }, lookAhead, context.config.admissionLimit);
+        }
+        else
+        {
+            for (int i = 0; i < workload.getNumProcesses(); i++)
+                admit(workload.loadProcess(i));
+        }
+
+        foundSystemBegin = true;
+        foundSystemFinish = true;
+    }
 
-                if (currOperation.type == OperationType.INPUT ||
-                    currOperation.type == OperationType.OUTPUT)
-                        currPCB.incrementNumIO();
+    /**
+     * \brief Sets up a workload made by WorkloadGenerator.
+     * \details Only the first processes, up to the generator's admission
+     *          window, are made now. Another is made each time one
+     *          finishes, so the whole workload is never in memory. The
+     *          window is both how many processes are kept waiting to run
+     *          and how many are admitted at once.
+     */
+    private void loadGeneratedWorkload(String filePath)
+    {
+        WorkloadGenerator generator = null;
+        try {
+            generator = new WorkloadGenerator(filePath);
+        } catch (SimulationException e) {
+            context.logger.logError(e.getMessage());
+        }
+
+        int window = generator.getAdmissionWindow();
+        startAdmitting(generator.processes(context), window, window);
+        foundSystemBegin = true;
+        foundSystemFinish = true;
+    }
 
-                currPCB.incrementNumOperations();
+    /**
+     * \brief Loads processes while the simulation runs instead of all at once.
+     * \details The first processes, up to the window, are admitted now.
+     * \param pending The processes that have yet to be loaded, in order.
+     * \param window How many admitted processes may be waiting for their
+     *        first dispatch.
+     * \param limit The most processes admitted and not yet finished at
+     *        once, or 0 for no limit.
+     */
+    private void startAdmitting(Iterator<ProcessControlBlock> pending, int window, int limit)
+    {
+        pendingProcesses = pending;
+        admissionWindow = window;
+        admissionLimit = limit;
+        admitPending(0);
+    }
 
-                currPCB.addOperation(currOperation);
+    /**
+     * \brief Admits processes that have yet to be loaded.
+     * \details Processes are admitted until as many are waiting for their
+     *          first dispatch as the window allows, or the admission limit
+     *          is reached. This only depends on how many processes have
+     *          started and finished, never on how far ahead the parser is,
+     *          so a virtual time run is the same every time. Called from a
+     *          core's thread while the simulation runs, so an idle core is
+     *          woken for each process it is given.
+     * \param numFinishing Processes that have finished but are still
+     *        counted as left, which do not count against the limit.
+     */
+    private void admitPending(int numFinishing)
+    {
+        synchronized (pendingProcesses)
+        {
+            while (numUnstarted.get() < admissionWindow &&
+                   (admissionLimit == 0 ||
+                    numProcessesLeft.get() - numFinishing < admissionLimit) &&
+                   pendingProcesses.hasNext())
+            {
+                Core core = cores[nextCore];
+                admit(pendingProcesses.next());
+                if (core.isIdle())
+                    core.signal();
             }
+        }
+    }
 
-            else
-                Logger.logError("Operation is not valid");
+    /**
+     * \brief Hands a newly loaded process to a core.
+     * \details Processes are dealt out to the cores in turn, in the
+     *          order they appear in the meta data.
+     */
+    private void admit(ProcessControlBlock pcb)
+    {
+        Core core = cores[nextCore];
+        pcb.setCore(core);
+        core.add(pcb);
+        numProcessesLeft.incrementAndGet();
+        numUnstarted.incrementAndGet();
+        numProcesses++;
+        nextCore = (nextCore + 1) % cores.length;
+    }
+
+    /**
+     * \brief Runs every loaded process to completion.
+     * \details The first core runs on the calling thread and every other
+     *          core gets its own thread. Once they are all done, the
+     *          utilization of each core is reported along with the
+     *          speedup, which is the serial time, every operation's time
+     *          added up, over the makespan. That is how much faster the
+     *          run was than one core with no IO overlapping it.
+     *          If the simulation fails on any thread, the error is thrown
+     *          from here.
+     */
+    public void simulate()
+    {
+        Logger logger = context.logger;
+        logger.startMasterTimer();
+        logger.log("Simulator program starting");
+        long startTime = context.clock.nanoTime();
+        context.metrics.start(startTime);
+
+        if (context.clock.isVirtual())
+        {
+            for (Core core : cores)
+                core.joinVirtualTime();
         }
 
+        Thread[] threads = new Thread[cores.length];
+        for (int i = 1; i < cores.length; i++)
+        {
+            final Core core = cores[i];
+            threads[i] = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        runCore(core);
+                    }
+                }, "core-" + core.getCoreID()
+            );
+            threads[i].start();
+        }
+
+        runCore(cores[0]);
+
+        for (int i = 1; i < cores.length; i++)
+        {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                context.logger.logError("OS was interrupted while waiting on core " +
+                                        cores[i].getCoreID());
+            }
+        }
+        context.checkFailed();
+
+        makespan = context.clock.nanoTime() - startTime;
+        long totalBusyTime = 0;
+        for (Core core : cores)
+        {
+            totalBusyTime += core.getBusyTime();
+            if (cores.length > 1)
+                logger.log("OS: core " + core.getCoreID() + " busy " +
+                           String.format("%.6f", core.getBusyTime() / 1000000000.0) +
+                           " (sec), utilization " + formatPercent(core.getBusyTime(), makespan) +
+                           "%, " + core.getNumDispatched() + " dispatches, " +
+                           core.getNumStolen() + " stolen");
+        }
+
+        cpuTime = totalBusyTime;
+        logger.log("OS: makespan " + String.format("%.6f", makespan / 1000000000.0) +
+                   " (sec), CPU utilization " +
+                   formatPercent(totalBusyTime, makespan * cores.length) + "%");
+        SchedulingMetrics metrics = context.metrics;
+        long serialTime = metrics.getSerialTime();
+        logger.log("OS: CPU time " + String.format("%.6f", totalBusyTime / 1000000000.0) +
+                   " (sec), serial time " + String.format("%.6f", serialTime / 1000000000.0) +
+                   " (sec), speedup " + formatSpeedup(serialTime, makespan) +
+                   " on " + cores.length + (cores.length == 1 ? " core" : " cores"));
+        logger.log("OS: " + metrics.getReport(makespan));
+        logger.log("OS: " + metrics.getLatencyReport("turnaround", metrics.getTurnaround()));
+        logger.log("OS: " + metrics.getLatencyReport("waiting", metrics.getWaiting()));
+        logger.log("OS: " + metrics.getLatencyReport("response", metrics.getResponse()));
+        logger.log("OS: " + metrics.getLatencyReport("IO wait", metrics.getIOLatency()));
+        if (metrics.hasFeedbackLevels())
+        {
+            for (int i = 0; i < context.config.feedbackLevels; i++)
+                logger.log("OS: " + metrics.getLevelReport(i));
+            logger.log("OS: " + metrics.getFeedbackReport(makespan));
+        }
+        logger.log("OS: " + context.memory.getReport());
+        if (context.virtualMemory.isEnabled())
+            logger.log("OS: " + context.virtualMemory.getReport());
+        if (context.resources.isDiskSchedulingEnabled())
+            logger.log("OS: " + context.resources.getDiskReport());
+        metrics.writeReport(makespan);
+        if (pipeline != null)
+            pipeline.close();
+        logger.log("Simulator program ending");
+        logger.writeBufferToFile();
+        context.io.shutdown();
+    }
+
+
+    /**
+     * \brief Runs a core until there is nothing left for it to do.
+     * \details Any error it throws fails the simulation, so the other
+     *          cores stop waiting for it and simulate() throws the error.
+     */
+    private void runCore(Core core)
+    {
         try {
-            metaDataScanner.close();
-            metaDataFile.close();
-        } catch (IOException e) {
-            Logger.logError("IO failed on " + Configuration.mdfPath);
+            core.run();
+        } catch (SimulationException e) {
+            // Does nothing if the error was already handed to the context
+            context.fail(e);
+        } catch (RuntimeException e) {
+            context.fail(new SimulationException("Core " + core.getCoreID() + " failed: " + e));
         }
     }
 
     /**
-     * \brief Simulates first come first serve scheduling algorithm.
+     * \brief Formats the serial time over the makespan with two decimals.
+     */
+    static String formatSpeedup(long serialTime, long makespan)
+    {
+        return String.format("%.2f", makespan == 0 ? 0.0 : (double)serialTime / makespan);
+    }
+
+    /**
+     * \brief Formats part over whole as a percentage with one decimal.
      */
-    public void simulateFCFS()
+    private static String formatPercent(long part, long whole)
     {
-        Logger.startMasterTimer();
-        Logger.log("Simulator program starting");
+        return String.format("%.1f", whole == 0 ? 0.0 : 100.0 * part / whole);
+    }
 
-        while (!fifoQueue.isEmpty())
+    /**
+     * \brief Getter for the simulation the OS runs in.
+     */
+    public SimulationContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * \brief Getters for the results of the simulation.
+     * \details The times are in nanoseconds and only set once
+     *          simulate() has returned.
+     */
+    public int getNumProcesses()
+    {
+        return numProcesses;
+    }
+
+    public int getNumCores()
+    {
+        return cores.length;
+    }
+
+    public long getMakespan()
+    {
+        return makespan;
+    }
+
+    public long getCpuTime()
+    {
+        return cpuTime;
+    }
+
+    /**
+     * \brief Checks if any process has yet to finish.
+     */
+    public boolean hasProcessesLeft()
+    {
+        return numProcessesLeft.get() > 0;
+    }
+
+    /**
+     * \brief Called by a core when it dispatches a process for the first time.
+     * \details A generated workload, or one read with a look-ahead
+     *          window, admits the next process so there is another
+     *          waiting to run in its place.
+     */
+    public void processStarted()
+    {
+        numUnstarted.decrementAndGet();
+        if (pendingProcesses != null)
         {
-            ProcessControlBlock currPCB = fifoQueue.poll();
-            Logger.log("OS: preparing process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.READY);
-            Logger.log("OS: starting process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.RUNNING);
-            currPCB.run();
-            Logger.log("OS: removing process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.TERMINATED);
+            admitPending(0);
+            signalWork();
         }
+    }
 
-        Logger.log("Simulator program ending");
-        Logger.writeBufferToFile();
+    /**
+     * \brief Called by a core when one of its processes has finished.
+     * \details If the admission limit held processes back, the next
+     *          one is admitted in its place. Once the last one is done,
+     *          idle cores are woken so they can see there is nothing
+     *          left and stop.
+     */
+    public void processFinished()
+    {
+        if (pendingProcesses != null)
+        {
+            admitPending(1);
+            signalWork();
+        }
+
+        if (numProcessesLeft.decrementAndGet() == 0)
+        {
+            for (Core core : cores)
+                core.signal();
+            signalWork();
+        }
     }
 
     /**
-     * \brief Simulates the algorithms that utilize a priority queue.
+     * \brief Called when a process's IO operation has completed.
+     * \details The process goes back to the core it last ran on. If that
+     *          core is busy, an idle core is woken so it can steal it.
+     * \param pcb The process that is done waiting.
      */
-    public void simulatePriority()
+    public void wakeProcess(ProcessControlBlock pcb)
     {
-        Logger.startMasterTimer();
-        Logger.log("Simulator program starting");
+        Core home = pcb.getCore();
+        home.wakeProcess(pcb);
 
-        while (!priorityQueue.isEmpty())
+        if (home.isIdle())
+            home.signal();
+        else
         {
-            ProcessControlBlock currPCB = priorityQueue.poll();
-            Logger.log("OS: preparing process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.READY);
-            Logger.log("OS: starting process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.RUNNING);
-            currPCB.run();
-            Logger.log("OS: removing process " + currPCB.getProcessID());
-            currPCB.setProcessState(State.TERMINATED);
+            for (Core core : cores)
+            {
+                if (core.isIdle())
+                {
+                    core.signal();
+                    break;
+                }
+            }
         }
 
-        Logger.log("Simulator program ending");
-        Logger.writeBufferToFile();
+        signalWork();
     }
 
     /**
-     * \brief Wraps the functionality of both simulations into a single method.
+     * \brief Takes a process from the most loaded core for an idle one.
+     * \param thief The core that has run out of work.
+     * \return The stolen process, or null if no core has any to spare.
      */
-    public void simulate()
+    public ProcessControlBlock steal(Core thief)
     {
-        if (Configuration.scheduleType == ScheduleType.FCFS)
-            simulateFCFS();
-        else if (Configuration.scheduleType == ScheduleType.SJF ||
-                 Configuration.scheduleType == ScheduleType.PS)
-            simulatePriority();
+        Core victim = null;
+        int maxLoad = 0;
+
+        for (Core core : cores)
+        {
+            if (core == thief)
+                continue;
+
+            int load = core.getLoad();
+            if (load > maxLoad)
+            {
+                victim = core;
+                maxLoad = load;
+            }
+        }
+
+        if (victim == null)
+            return null;
+
+        ProcessControlBlock pcb = victim.steal();
+        if (pcb != null)
+        {
+            thief.countSteal();
+            context.logger.log(LogEvent.STEALING, pcb.getProcessID(), thief, victim.getCoreID());
+        }
+
+        return pcb;
     }
 
     /**
-     * \brief Reads a chunk of the meta data file that represents an operation.
-     * \details Regex are used to extract one job meta datum.
-     *          The string is then split three ways with another regex
-     *          in order to store the respective tokens.
-     * \param metaDataScanner Scanner that's tied to the meta data file.
-     * \param op The operation object that will store the extracted tokens.
-     * \return The operation with fields set to extracted metadata.
-     *         If the end of the file has been reached, then returns null.
+     * \brief Blocks an idle core's thread until there may be new work.
+     * \details Only used in real time, where IO completes on other threads.
      */
-    private Operation extractOperation(Scanner metaDataScanner)
+    public void waitForWork()
     {
-        String[] tokens = null;
+        synchronized (workLock)
+        {
+            try {
+                while (hasProcessesLeft() && !hasQueuedWork())
+                {
+                    context.checkFailed();
+                    workLock.wait();
+                }
+            } catch (InterruptedException e) {
+                context.logger.logError("OS was interrupted while waiting on IO");
+            }
+        }
+    }
 
-        try {
-            tokens = metaDataScanner.next().split("\\{|\\}");
-            for (String s : tokens) s.trim();
-        } catch (Exception e) {
-            Logger.logError("Failed to parse meta data operation");
+    /**
+     * \brief Checks if any core has a process waiting to run.
+     */
+    private boolean hasQueuedWork()
+    {
+        for (Core core : cores)
+        {
+            if (core.getLoad() > 0)
+                return true;
         }
 
-        return new Operation(tokenToType(tokens[0]), tokens[1],
-                             Integer.parseInt(tokens[2]));
+        return false;
     }
 
     /**
-     * \brief Converts valid token string to operation type.
-     * \token Valid token string.
-     * \return The type of operation represented by token.
+     * \brief Wakes every idle core.
+     * \details Called when the simulation fails, so they can stop.
      */
-    private OperationType tokenToType(String token)
+    public void wakeAll()
     {
-        if (token.equals("S"))
-            return OperationType.SYSTEM;
-        if (token.equals("A"))
-            return OperationType.APP;
-        if (token.equals("P"))
-            return OperationType.PROCESS;
-        if (token.equals("I"))
-            return OperationType.INPUT;
-        if (token.equals("O"))
-            return OperationType.OUTPUT;
-        if (token.equals("M"))
-            return OperationType.MEMORY;
+        if (pipeline != null)
+            pipeline.close();
+        signalWork();
+    }
 
-        Logger.logError("Not a valid token");
-        return null;
+    /**
+     * \brief Wakes every core blocked in waitForWork().
+     */
+    private void signalWork()
+    {
+        synchronized (workLock)
+        {
+            workLock.notifyAll();
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,12 +3,82 @@
  */
 enum OperationType
 {
-    SYSTEM,
-    APP,
-    PROCESS,
-    INPUT,
-    OUTPUT,
-    MEMORY;
+    SYSTEM('S'),
+    APP('A'),
+    PROCESS('P'),
+    INPUT('I'),
+    OUTPUT('O'),
+    MEMORY('M');
+
+    /** Letter of the operation type in the meta data file. */
+    public final char letter;
+
+    OperationType(char letter)
+    {
+        this.letter = letter;
+    }
+
+    /**
+     * \brief Converts a letter from the meta data file to its type.
+     * \return The type, or null if the letter is not valid.
+     */
+    public static OperationType fromLetter(int letter)
+    {
+        for (OperationType type : values())
+        {
+            if (type.letter == letter)
+                return type;
+        }
+
+        return null;
+    }
+}
+
+/**
+ * \brief Enumeration of the device or action an operation uses.
+ * \details Operation names are resolved to a Device once, when the
+ *          meta data is parsed, so nothing compares name strings while
+ *          the simulation runs. The ordinal indexes the cycle time and
+ *          log message tables.
+ */
+enum Device
+{
+    BEGIN("begin", null),
+    FINISH("finish", null),
+    PROCESSOR("run", null),
+    ALLOCATE("allocate", null),
+    BLOCK("block", null),
+    HARD_DRIVE("hard drive", "HDD"),
+    KEYBOARD("keyboard", null),
+    MONITOR("monitor", null),
+    PROJECTOR("projector", "PROJ"),
+    SCANNER("scanner", null);
+
+    /** Name of the operation in the meta data file. */
+    public final String label;
+    /** Name of a single unit in the log, or null if units are not tracked. */
+    public final String unitTag;
+
+    Device(String label, String unitTag)
+    {
+        this.label = label;
+        this.unitTag = unitTag;
+    }
+
+    /**
+     * \brief Converts an operation name to its device.
+     * \return The device, or null if the name is not valid.
+     */
+    public static Device fromLabel(String label)
+    {
+        for (Device device : values())
+        {
+            if (device.label.equals(label))
+                return device;
+        }
+
+        return null;
+    }
 }
 
 
@@ -20,19 +90,19 @@ enum OperationType
 class Operation
 {
     public OperationType type;
-    public String name;
+    public Device device;
     public int numCycles;
 
     /**
      * \brief Operation constructor.
      * \param type Type of operation.
-     * \param name Name of operation.
+     * \param device Device the operation uses.
      * \param numCycles Number of processor cycles to perform.
      */
-    Operation(OperationType type, String name, int numCycles)
+    Operation(OperationType type, Device device, int numCycles)
     {
         this.type = type;
-        this.name = new String(name);
+        this.device = device;
         this.numCycles = numCycles;
     }
 
@@ -69,7 +139,7 @@ class Operation
     public boolean equals(Operation other)
     {
         if (type == other.type &&
-            name.equals(other.name) &&
+            device == other.device &&
             numCycles == other.numCycles)
                 return true;
 
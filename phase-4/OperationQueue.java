@@ -0,0 +1,165 @@
+/**
+ * Compact queue of a process's operations.
+ * Keeping every operation as its own object in a linked list cost
+ * well over 80 bytes per operation, which adds up quickly on workloads
+ * with millions of processes. Operations are stored here in two
+ * primitive arrays instead: one byte that packs the operation type and
+ * device ordinal together, and one int for the number of cycles. A cursor
+ * marks the front of the queue. Operation objects are only created
+ * when an operation is taken off the queue to be run.
+ */
+
+import java.util.Arrays;
+
+class OperationQueue
+{
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int DEVICE_BITS = 4;
+    private static final int DEVICE_MASK = (1 << DEVICE_BITS) - 1;
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final Device[] DEVICES = Device.values();
+
+    private byte[] codes;
+    private int[] cycles;
+    private int head,
+                tail;
+
+    /**
+     * \brief OperationQueue constructor.
+     */
+    OperationQueue()
+    {
+        codes = new byte[INITIAL_CAPACITY];
+        cycles = new int[INITIAL_CAPACITY];
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * \brief Creates a queue that holds the given operations.
+     * \details The arrays are used as they are, not copied.
+     * \param codes The code of each operation, from encode().
+     * \param cycles The number of cycles of each operation.
+     */
+    OperationQueue(byte[] codes, int[] cycles)
+    {
+        this.codes = codes;
+        this.cycles = cycles;
+        head = 0;
+        tail = codes.length;
+    }
+
+    /**
+     * \brief Packs an operation's type and device into the byte it is stored as.
+     */
+    public static byte encode(OperationType type, Device device)
+    {
+        return (byte)((type.ordinal() << DEVICE_BITS) | device.ordinal());
+    }
+
+    /**
+     * \brief Adds an operation to the back of the queue.
+     * \param op The operation, which is not kept.
+     */
+    public void add(Operation op)
+    {
+        if (tail == codes.length)
+        {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+            cycles = Arrays.copyOf(cycles, cycles.length * 2);
+        }
+
+        codes[tail] = encode(op.type, op.device);
+        cycles[tail] = op.numCycles;
+        tail++;
+    }
+
+    /**
+     * \brief Takes the operation off the front of the queue.
+     * \return The operation, or null if the queue is empty.
+     */
+    public Operation poll()
+    {
+        if (head == tail)
+            return null;
+
+        Operation op = new Operation(TYPES[codes[head] >> DEVICE_BITS],
+                                     DEVICES[codes[head] & DEVICE_MASK],
+                                     cycles[head]);
+        head++;
+        return op;
+    }
+
+    /**
+     * \brief Puts the operation that was just taken back on the front.
+     * \details Used when an operation is cut off part way through.
+     * \param numCycles The number of cycles the operation has left.
+     */
+    public void requeueFront(int numCycles)
+    {
+        head--;
+        cycles[head] = numCycles;
+    }
+
+    /**
+     * \brief Gives the number of cycles of the operation at the front.
+     * \return The number of cycles, or 0 if the queue is empty.
+     */
+    public int peekCycles()
+    {
+        return head == tail ? 0 : cycles[head];
+    }
+
+    /**
+     * \brief Gives how long the operations left take to run (ns).
+     * \details Each operation takes its cycles times its device's cycle
+     *          time. Seek time and page faults are not known in advance,
+     *          so they are left out.
+     */
+    public long getServiceNanos(Configuration config)
+    {
+        long nanos = 0;
+        for (int i = head; i < tail; i++)
+            nanos += (long)cycles[i] * config.getCycleTime(DEVICES[codes[i] & DEVICE_MASK]);
+        return nanos * 1000000L;
+    }
+
+    /**
+     * \brief Gives the number of operations left.
+     */
+    public int size()
+    {
+        return tail - head;
+    }
+
+    /**
+     * \brief Checks if there are operations left.
+     */
+    public boolean isEmpty()
+    {
+        return head == tail;
+    }
+
+    /**
+     * \brief Shrinks the arrays down to the operations they hold.
+     * \details Called once all of a process's operations have been added.
+     */
+    public void trimToSize()
+    {
+        codes = Arrays.copyOfRange(codes, head, tail);
+        cycles = Arrays.copyOfRange(cycles, head, tail);
+        tail -= head;
+        head = 0;
+    }
+
+    /**
+     * \brief Frees the arrays once the queue is no longer needed.
+     */
+    public void clear()
+    {
+        codes = new byte[0];
+        cycles = new int[0];
+        head = 0;
+        tail = 0;
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Page replacement policies for the virtual memory module.
+ * A policy only sees frame numbers. It is told when a frame is loaded,
+ * referenced, or freed, and picks the frame to evict when every frame
+ * is in use. Every operation is constant time, apart from CLOCK's sweep,
+ * which only passes over each frame a bounded number of times.
+ */
+
+interface PageReplacement
+{
+    /**
+     * \brief Called when a page is loaded into a frame.
+     */
+    void loaded(int frame);
+
+    /**
+     * \brief Called every time the page in a frame is referenced.
+     */
+    void referenced(int frame);
+
+    /**
+     * \brief Called when a frame's page is released without being evicted.
+     */
+    void freed(int frame);
+
+    /**
+     * \brief Picks the frame to evict, which is then treated as freed.
+     */
+    int selectVictim();
+
+    /**
+     * \brief Creates the policy chosen in the configuration.
+     * \param numFrames Number of physical frames.
+     */
+    static PageReplacement create(ReplacementType type, int numFrames)
+    {
+        switch (type)
+        {
+            case FIFO:
+                return new ListReplacement(numFrames, false);
+            case LRU:
+                return new ListReplacement(numFrames, true);
+            case CLOCK:
+                return new ClockReplacement(numFrames);
+            default:
+                return null;
+        }
+    }
+}
+
+
+/**
+ * FIFO and LRU replacement.
+ * Frames are kept in a doubly linked list threaded through two int
+ * arrays, oldest at the head. FIFO orders them by when they were
+ * loaded, LRU also moves a frame to the tail every time it is referenced.
+ */
+class ListReplacement implements PageReplacement
+{
+    private static final int NONE = -1;
+
+    private final int[] prev;
+    private final int[] next;
+    private final boolean isLeastRecentlyUsed;
+    private int head,
+                tail;
+
+    /**
+     * \brief ListReplacement constructor.
+     * \param isLeastRecentlyUsed True for LRU, false for FIFO.
+     */
+    ListReplacement(int numFrames, boolean isLeastRecentlyUsed)
+    {
+        this.prev = new int[numFrames];
+        this.next = new int[numFrames];
+        this.isLeastRecentlyUsed = isLeastRecentlyUsed;
+        this.head = NONE;
+        this.tail = NONE;
+    }
+
+    public void loaded(int frame)
+    {
+        append(frame);
+    }
+
+    public void referenced(int frame)
+    {
+        if (isLeastRecentlyUsed && frame != tail)
+        {
+            unlink(frame);
+            append(frame);
+        }
+    }
+
+    public void freed(int frame)
+    {
+        unlink(frame);
+    }
+
+    public int selectVictim()
+    {
+        int victim = head;
+        unlink(victim);
+        return victim;
+    }
+
+    private void append(int frame)
+    {
+        prev[frame] = tail;
+        next[frame] = NONE;
+        if (tail == NONE)
+            head = frame;
+        else
+            next[tail] = frame;
+        tail = frame;
+    }
+
+    private void unlink(int frame)
+    {
+        if (prev[frame] == NONE)
+            head = next[frame];
+        else
+            next[prev[frame]] = next[frame];
+
+        if (next[frame] == NONE)
+            tail = prev[frame];
+        else
+            prev[next[frame]] = prev[frame];
+    }
+}
+
+
+/**
+ * CLOCK, or second chance, replacement.
+ * Every frame has a reference bit that is set when its page is used.
+ * The hand sweeps over the frames clearing the bits, and evicts the
+ * first frame in use whose bit is already clear.
+ */
+class ClockReplacement implements PageReplacement
+{
+    private final boolean[] isInUse;
+    private final boolean[] isReferenced;
+    private int hand;
+
+    ClockReplacement(int numFrames)
+    {
+        this.isInUse = new boolean[numFrames];
+        this.isReferenced = new boolean[numFrames];
+        this.hand = 0;
+    }
+
+    public void loaded(int frame)
+    {
+        isInUse[frame] = true;
+        isReferenced[frame] = true;
+    }
+
+    public void referenced(int frame)
+    {
+        isReferenced[frame] = true;
+    }
+
+    public void freed(int frame)
+    {
+        isInUse[frame] = false;
+        isReferenced[frame] = false;
+    }
+
+    public int selectVictim()
+    {
+        while (!isInUse[hand] || isReferenced[hand])
+        {
+            isReferenced[hand] = false;
+            hand = (hand + 1) % isInUse.length;
+        }
+
+        int victim = hand;
+        freed(victim);
+        hand = (hand + 1) % isInUse.length;
+        return victim;
+    }
+}
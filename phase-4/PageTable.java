@@ -0,0 +1,108 @@
+/**
+ * Page table of a single process.
+ * Maps each of the process's virtual pages to the physical frame it is
+ * loaded in, or to NOT_RESIDENT if it has been evicted. Pages are added
+ * as the process allocates memory and are never taken away until the
+ * process terminates. A reference to an evicted page leaves the page
+ * faulted until it has been read back in from the hard drive.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+class PageTable
+{
+    public static final int NOT_RESIDENT = -1;
+
+    private final int processID;
+    private int[] frames;
+    private int numPages;
+    private int faultPage;
+    private final Random references;
+
+    /**
+     * \brief PageTable constructor.
+     * \details The pages a process references are picked at random,
+     *          seeded with the process ID so every run is the same.
+     */
+    PageTable(int processID)
+    {
+        this.processID = processID;
+        this.frames = new int[4];
+        this.numPages = 0;
+        this.faultPage = NOT_RESIDENT;
+        this.references = new Random(processID);
+    }
+
+    /**
+     * \brief Adds a page to the process's address space.
+     * \param frame The frame the page is loaded in.
+     * \return The page number.
+     */
+    public int addPage(int frame)
+    {
+        if (numPages == frames.length)
+            frames = Arrays.copyOf(frames, numPages * 2);
+        frames[numPages] = frame;
+        return numPages++;
+    }
+
+    /**
+     * \brief Picks the next page the process references.
+     * \details Programs spend most of their time on a small set of
+     *          pages, so four out of five references go to the most
+     *          recently allocated fifth of the pages, and the rest go
+     *          anywhere in the address space.
+     * \return The page number, or NOT_RESIDENT if there are no pages.
+     */
+    public int nextReference()
+    {
+        if (numPages == 0)
+            return NOT_RESIDENT;
+
+        int hotPages = Math.max(1, numPages / 5);
+        if (references.nextInt(5) < 4)
+            return numPages - 1 - references.nextInt(hotPages);
+        else
+            return references.nextInt(numPages);
+    }
+
+    public int getProcessID()
+    {
+        return processID;
+    }
+
+    public int getNumPages()
+    {
+        return numPages;
+    }
+
+    public int getFrame(int page)
+    {
+        return frames[page];
+    }
+
+    public void setFrame(int page, int frame)
+    {
+        frames[page] = frame;
+    }
+
+    /**
+     * \brief Getter and setter for the page waiting to be read in.
+     * \details NOT_RESIDENT if no page has faulted.
+     */
+    public int getFaultPage()
+    {
+        return faultPage;
+    }
+
+    public void setFaultPage(int page)
+    {
+        faultPage = page;
+    }
+
+    public boolean hasPageFault()
+    {
+        return faultPage != NOT_RESIDENT;
+    }
+}
@@ -0,0 +1,444 @@
+/**
+ * Parameter sweep driver for the OS simulation.
+ * Runs one workload under every combination of a set of settings and
+ * writes a line of CSV with the results of each, so questions like how
+ * many projectors and which scheduler give the shortest makespan can be
+ * answered in one run instead of editing configuration files by hand.
+ *
+ * The sweep file lists the settings to vary, one per line, using the
+ * same names as the configuration file:
+ *
+ *     CPU scheduling code: fifo, ps, rr
+ *     Processor quantum number: 2-8 step 2
+ *     Projector quantity: 1-4
+ *     Hard drive cycle time {msec}: 50, 100, 150
+ *
+ * Numbers can be listed, given as a range, or both. Every other setting
+ * comes from the base configuration file. The points run in parallel on
+ * a fork/join pool, each in its own simulation context, with the clock
+ * in virtual mode and logging turned off. Rows are written as soon as
+ * each point finishes, so they are not in order, and each starts with
+ * the number of its point.
+ *
+ * Usage: java ParameterSweep <config file> <sweep file> [output file]
+ */
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class ParameterSweep
+{
+    private static final String[] SWEEPABLE = { "processor quantum number",
+                                                "cpu scheduling code",
+                                                "processor cycle time {msec}",
+                                                "monitor display time {msec}",
+                                                "hard drive cycle time {msec}",
+                                                "projector cycle time {msec}",
+                                                "keyboard cycle time {msec}",
+                                                "memory cycle time {msec}",
+                                                "scanner cycle time {msec}",
+                                                "projector quantity",
+                                                "hard drive quantity",
+                                                "processor cores",
+                                                "feedback levels",
+                                                "priority boost interval {msec}",
+                                                "look-ahead window {processes}",
+                                                "admission limit {processes}" };
+
+    private final Configuration baseConfig;
+    private final List<String> names;
+    private final List<String[]> values;
+    private final PrintWriter output;
+    private final long numPoints;
+    private long bestPoint;
+    private long bestMakespan;
+    private int numFailed;
+
+    /**
+     * \brief ParameterSweep constructor.
+     * \param baseConfig The settings every point starts from.
+     * \param sweepFilePath The file listing the settings to vary.
+     * \param output Where the rows are written.
+     */
+    ParameterSweep(Configuration baseConfig, String sweepFilePath, PrintWriter output)
+    {
+        this.baseConfig = baseConfig;
+        this.names = new ArrayList<String>();
+        this.values = new ArrayList<String[]>();
+        this.output = output;
+        this.bestPoint = -1;
+        this.bestMakespan = Long.MAX_VALUE;
+        this.numFailed = 0;
+        readSweepFile(sweepFilePath);
+
+        long count = 1;
+        for (String[] options : values)
+            count = Math.multiplyExact(count, options.length);
+        this.numPoints = count;
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Must supply a configuration file and a sweep file");
+            System.exit(1);
+        }
+
+        try {
+            PrintWriter output;
+            if (args.length > 2)
+                output = new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[2])));
+            else
+                output = new PrintWriter(System.out);
+
+            ParameterSweep sweep = new ParameterSweep(new Configuration(args[0]), args[1], output);
+            long start = System.nanoTime();
+            sweep.run();
+            output.close();
+            sweep.printSummary((System.nanoTime() - start) / 1000000000.0);
+        } catch (SimulationException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (FileNotFoundException e) {
+            System.err.println("Unable to write to " + args[2]);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * \brief Runs every point of the sweep.
+     * \details The header is written first, then a row per point as
+     *          each one finishes.
+     */
+    public void run()
+    {
+        StringBuilder header = new StringBuilder("point");
+        for (String name : names)
+            header.append(',').append(name);
+        header.append(",processes,makespan (sec),cpu time (sec),cpu utilization (%),speedup," +
+                      "throughput (processes/sec),waiting avg (sec),turnaround p99 (sec),error");
+        output.println(header);
+        output.flush();
+
+        if (numPoints > 0)
+            new ForkJoinPool().invoke(new SweepTask(0, numPoints));
+    }
+
+    /**
+     * \brief Gives the number of points in the sweep.
+     */
+    public long getNumPoints()
+    {
+        return numPoints;
+    }
+
+    /**
+     * \brief Splits a range of points in half until each task has one.
+     * \details A single simulation is plenty of work for a task, and the
+     *          halves are stolen by idle workers, so the pool stays busy
+     *          even when some points take much longer than others.
+     */
+    private class SweepTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from,
+                           to;
+
+        SweepTask(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                runPoint(from);
+                return;
+            }
+
+            long middle = from + (to - from) / 2;
+            invokeAll(new SweepTask(from, middle), new SweepTask(middle, to));
+        }
+    }
+
+    /**
+     * \brief Runs the simulation for one point and writes its row.
+     * \details A point that fails gets a row with its error instead
+     *          of stopping the rest of the sweep.
+     * \param point Index of the point, the last setting varies fastest.
+     */
+    private void runPoint(long point)
+    {
+        Configuration config = new Configuration(baseConfig);
+        config.clockMode = ClockMode.VIRTUAL;
+        config.logType = LogType.NONE;
+        config.logMode = LogMode.SYNC;
+        config.metricsReport = MetricsReport.NONE;
+
+        String[] chosen = new String[names.size()];
+        long rest = point;
+        for (int i = names.size() - 1; i >= 0; i--)
+        {
+            String[] options = values.get(i);
+            chosen[i] = options[(int)(rest % options.length)];
+            rest /= options.length;
+            apply(config, names.get(i), chosen[i]);
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(point);
+        for (String value : chosen)
+            row.append(',').append(value);
+
+        try {
+            config.updateCycleTimes();
+            config.checkScheduler();
+            SimulationContext context = new SimulationContext(config);
+            OperatingSystem os = new OperatingSystem(context);
+            os.simulate();
+
+            long makespan = os.getMakespan();
+            long cpuTime = os.getCpuTime();
+            row.append(',').append(os.getNumProcesses());
+            row.append(',').append(String.format("%.6f", makespan / 1000000000.0));
+            row.append(',').append(String.format("%.6f", cpuTime / 1000000000.0));
+            row.append(',').append(String.format("%.1f", makespan == 0 ? 0.0 :
+                                                 100.0 * cpuTime / makespan / os.getNumCores()));
+            SchedulingMetrics metrics = context.metrics;
+            row.append(',').append(OperatingSystem.formatSpeedup(metrics.getSerialTime(), makespan));
+
+            row.append(',').append(String.format("%.4f", metrics.getThroughput(makespan)));
+            row.append(',').append(String.format("%.6f", metrics.getWaiting().getMean() /
+                                                         1000000000.0));
+            row.append(',').append(String.format("%.6f",
+                                                 metrics.getTurnaround().getPercentile(99) /
+                                                 1000000000.0));
+            row.append(',');
+            writeRow(row, point, makespan);
+        } catch (SimulationException e) {
+            row.append(",,,,,,,,,").append(quote(e.getMessage().split("\n")[0]));
+            writeRow(row, point, -1);
+        }
+    }
+
+    /**
+     * \brief Writes a finished row and keeps track of the best point.
+     * \param makespan The point's makespan (ns), or -1 if it failed.
+     */
+    private synchronized void writeRow(CharSequence row, long point, long makespan)
+    {
+        output.println(row);
+        output.flush();
+
+        if (makespan < 0)
+            numFailed++;
+        else if (makespan < bestMakespan || (makespan == bestMakespan && point < bestPoint))
+        {
+            bestMakespan = makespan;
+            bestPoint = point;
+        }
+    }
+
+    /**
+     * \brief Prints how the sweep went, and its point with the lowest makespan.
+     * \param seconds How long the sweep took.
+     */
+    private void printSummary(double seconds)
+    {
+        System.err.println("Ran " + numPoints + " points in " + String.format("%.3f", seconds) +
+                           " (sec), " + numFailed + " failed");
+        if (bestPoint >= 0)
+            System.err.println("Lowest makespan: point " + bestPoint + ", " +
+                               String.format("%.6f", bestMakespan / 1000000000.0) + " (sec)");
+    }
+
+    /**
+     * \brief Sets one of the swept settings.
+     * \details Values were checked when the sweep file was read.
+     */
+    private static void apply(Configuration config, String name, String value)
+    {
+        switch (name.toLowerCase())
+        {
+            case "processor quantum number":
+                config.processorQuantumNum = Integer.parseInt(value);
+                break;
+            case "cpu scheduling code":
+                config.scheduleCode = value;
+                break;
+            case "processor cycle time {msec}":
+                config.processorTime = Integer.parseInt(value);
+                break;
+            case "monitor display time {msec}":
+                config.monitorTime = Integer.parseInt(value);
+                break;
+            case "hard drive cycle time {msec}":
+                config.hardDriveTime = Integer.parseInt(value);
+                break;
+            case "projector cycle time {msec}":
+                config.projectorTime = Integer.parseInt(value);
+                break;
+            case "keyboard cycle time {msec}":
+                config.keyboardTime = Integer.parseInt(value);
+                break;
+            case "memory cycle time {msec}":
+                config.memoryTime = Integer.parseInt(value);
+                break;
+            case "scanner cycle time {msec}":
+                config.scannerTime = Integer.parseInt(value);
+                break;
+            case "projector quantity":
+                config.projectorQuantity = Integer.parseInt(value);
+                break;
+            case "hard drive quantity":
+                config.hardDriveQuantity = Integer.parseInt(value);
+                break;
+            case "processor cores":
+                config.processorCores = Integer.parseInt(value);
+                break;
+            case "feedback levels":
+                config.feedbackLevels = Integer.parseInt(value);
+                break;
+            case "priority boost interval {msec}":
+                config.boostInterval = Integer.parseInt(value);
+                break;
+            case "look-ahead window {processes}":
+                config.lookAhead = Integer.parseInt(value);
+                break;
+            case "admission limit {processes}":
+                config.admissionLimit = Integer.parseInt(value);
+                break;
+        }
+    }
+
+    /**
+     * \brief Reads the settings to vary and the values each one takes.
+     * \details Blank lines are skipped. A setting may only appear once.
+     */
+    private void readSweepFile(String sweepFilePath)
+    {
+        Scanner sweepScan = null;
+        try {
+            sweepScan = new Scanner(new FileInputStream(sweepFilePath));
+        } catch (FileNotFoundException e) {
+            throw new SimulationException("Sweep file not found\n" +
+                                          "Please enter a valid file path");
+        }
+
+        while (sweepScan.hasNextLine())
+        {
+            String line = sweepScan.nextLine().trim();
+            if (line.isEmpty())
+                continue;
+
+            String[] tokens = line.split(":");
+            if (tokens.length != 2)
+                throw new SimulationException("Malformed sweep line: " + line);
+
+            String name = tokens[0].trim();
+            String key = name.toLowerCase();
+            if (!isSweepable(key))
+                throw new SimulationException("Setting cannot be swept: " + name);
+            for (String other : names)
+            {
+                if (other.equalsIgnoreCase(name))
+                    throw new SimulationException("Setting is swept twice: " + name);
+            }
+
+            String[] options;
+            if (key.equals("cpu scheduling code"))
+                options = parseSchedules(tokens[1]);
+            else
+                options = parseNumbers(name, tokens[1], key.contains("quantity") ||
+                                                        key.equals("processor cores") ||
+                                                        key.equals("feedback levels") ? 1 : 0);
+
+            names.add(name);
+            values.add(options);
+        }
+
+        sweepScan.close();
+    }
+
+    /**
+     * \brief Checks if a setting is one that can be swept.
+     */
+    private static boolean isSweepable(String key)
+    {
+        for (String sweepable : SWEEPABLE)
+        {
+            if (sweepable.equals(key))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * \brief Parses a list of CPU scheduling codes.
+     */
+    private static String[] parseSchedules(String list)
+    {
+        String[] options = list.split(",");
+        for (int i = 0; i < options.length; i++)
+        {
+            options[i] = Configuration.parseScheduleCode(options[i].trim());
+        }
+        return options;
+    }
+
+    /**
+     * \brief Parses a list of numbers and ranges.
+     * \details Each item is a number, or a range like "1-4" or
+     *          "10-100 step 10" which includes both ends.
+     * \param name Name of the setting, used for error messages.
+     * \param minimum The smallest value the setting can take.
+     */
+    private static String[] parseNumbers(String name, String list, int minimum)
+    {
+        List<String> options = new ArrayList<String>();
+
+        try {
+            for (String item : list.split(","))
+            {
+                String[] words = item.trim().split("\\s+");
+                String[] ends = words[0].split("-");
+                int first = Integer.parseInt(ends[0]);
+                int last = ends.length > 1 ? Integer.parseInt(ends[1]) : first;
+                int step = 1;
+                if (words.length == 3 && words[1].equalsIgnoreCase("step"))
+                    step = Integer.parseInt(words[2]);
+                else if (words.length != 1 || ends.length > 2)
+                    throw new NumberFormatException();
+
+                if (first < minimum || last < first || step < 1)
+                    throw new SimulationException(name + " has an invalid range: " + item.trim());
+                for (long value = first; value <= last; value += step)
+                    options.add(Long.toString(value));
+            }
+        } catch (NumberFormatException e) {
+            throw new SimulationException(name + " must be whole numbers or ranges");
+        }
+
+        return options.toArray(new String[options.size()]);
+    }
+
+    /**
+     * \brief Quotes a CSV field.
+     */
+    private static String quote(String field)
+    {
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+}
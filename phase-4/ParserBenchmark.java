@@ -0,0 +1,160 @@
+/**
+ * Benchmark for the meta data parser.
+ * Compares the streaming tokenizer against the Scanner and regex
+ * parser it replaced, and reports the throughput of each in MB/s.
+ * Either an existing meta data file can be given, or a number of
+ * operations, in which case a file of that size is generated first.
+ *
+ * Usage: java ParserBenchmark <meta data file | operation count> [iterations]
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.util.Random;
+import java.util.Scanner;
+
+class ParserBenchmark
+{
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final String[] GENERATED_OPERATIONS = { "P{run}", "M{allocate}", "M{block}",
+                                                           "I{hard drive}", "I{keyboard}",
+                                                           "O{monitor}", "O{projector}",
+                                                           "O{hard drive}" };
+    private static long checksum = 0;
+    private static SimulationContext context;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Must supply a meta data file or an operation count");
+            System.exit(1);
+        }
+
+        int iterations = DEFAULT_ITERATIONS;
+        if (args.length > 1)
+            iterations = Integer.parseInt(args[1]);
+
+        Configuration config = new Configuration();
+        config.mdfPath = args[0];
+        context = new SimulationContext(config);
+
+        File metaDataFile = new File(args[0]);
+        if (!metaDataFile.exists())
+        {
+            metaDataFile = generateMetaData(Integer.parseInt(args[0]), 10);
+            metaDataFile.deleteOnExit();
+        }
+
+        double megabytes = metaDataFile.length() / (1024.0 * 1024.0);
+        String path = metaDataFile.getPath();
+        System.out.println(String.format("File size: %.2f MB", megabytes));
+        System.out.println(String.format("%-10s %12s %10s", "Parser", "ms/parse", "MB/s"));
+
+        double scannerTime = 0, tokenizerTime = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + iterations; i++)
+        {
+            long start = System.nanoTime();
+            parseWithScanner(path);
+            long middle = System.nanoTime();
+            parseWithTokenizer(path);
+            long end = System.nanoTime();
+
+            if (i >= WARMUP_ITERATIONS)
+            {
+                scannerTime += (middle - start) / 1000000.0;
+                tokenizerTime += (end - middle) / 1000000.0;
+            }
+        }
+
+        printResult("Scanner", scannerTime / iterations, megabytes);
+        printResult("Tokenizer", tokenizerTime / iterations, megabytes);
+        System.out.println("Checksum: " + checksum);
+    }
+
+    /**
+     * \brief Prints one line of the results table.
+     */
+    private static void printResult(String parser, double msPerParse, double megabytes)
+    {
+        System.out.println(String.format("%-10s %12.2f %10.2f", parser, msPerParse,
+                                         megabytes / (msPerParse / 1000.0)));
+    }
+
+    /**
+     * \brief Parses the file the way readMetaData() used to.
+     */
+    private static void parseWithScanner(String path) throws FileNotFoundException
+    {
+        Scanner scanner = new Scanner(new FileInputStream(path)).useDelimiter("; |;\n|:\n|\\.");
+        scanner.next();
+
+        while (scanner.hasNext())
+        {
+            String[] tokens = scanner.next().split("\\{|\\}");
+            if (tokens.length < 3)
+                break;
+            Operation op = new Operation(OperationType.PROCESS, Device.fromLabel(tokens[1]),
+                                         Integer.parseInt(tokens[2]));
+            checksum += op.numCycles;
+        }
+
+        scanner.close();
+    }
+
+    /**
+     * \brief Parses the file with the streaming tokenizer.
+     */
+    private static void parseWithTokenizer(String path)
+    {
+        MetaDataTokenizer tokenizer = new MetaDataTokenizer(context, path);
+
+        while (tokenizer.next())
+        {
+            Operation op = new Operation(tokenizer.getType(), tokenizer.getDevice(),
+                                         tokenizer.getNumCycles());
+            checksum += op.numCycles;
+        }
+
+        tokenizer.close();
+    }
+
+    /**
+     * \brief Writes a meta data file of randomly chosen operations.
+     * \details The seed is fixed so every run parses the same file. The
+     *          JMH benchmarks write their meta data with this too.
+     * \param numOperations Total number of operations.
+     * \param operationsPerProcess Operations in each application, or 0
+     *        for a file with no applications at all.
+     */
+    static File generateMetaData(int numOperations, int operationsPerProcess) throws IOException
+    {
+        File file = File.createTempFile("benchmark", ".mdf");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        Random random = new Random(446);
+
+        writer.write("Start Program Meta-Data Code:\nS{begin}0;");
+        if (numOperations > 0)
+            writer.write(" A{begin}0;");
+        for (int i = 0; i < numOperations; i++)
+        {
+            if (i > 0 && i % operationsPerProcess == 0)
+                writer.write(" A{finish}0; A{begin}0;");
+            if (i % 5 == 0)
+                writer.write("\n");
+            writer.write(" " + GENERATED_OPERATIONS[random.nextInt(GENERATED_OPERATIONS.length)] +
+                         (1 + random.nextInt(20)) + ";");
+        }
+        if (numOperations > 0)
+            writer.write(" A{finish}0;");
+        writer.write(" S{finish}0.\nEnd Program Meta-Data Code.\n");
+        writer.close();
+
+        return file;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * A thread that takes turns with others running in virtual time.
+ * The event queue decides whose turn it is, this only keeps track of
+ * whether the participant is idle and waiting to be woken up.
+ */
+class Participant
+{
+    private boolean isParked;
+
+    /**
+     * \brief Marks the participant as idle until it is unparked.
+     */
+    void park()
+    {
+        isParked = true;
+    }
+
+    /**
+     * \brief Clears the idle mark.
+     * \return True if the participant was parked.
+     */
+    boolean unpark()
+    {
+        boolean wasParked = isParked;
+        isParked = false;
+        return wasParked;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Priority scheduling.
+ * The ready process with the most IO operations runs next, until it
+ * blocks on IO or finishes, so the devices are kept busy.
+ * Processes with the same priority run in the order they became ready.
+ */
+
+import java.util.function.ToLongFunction;
+
+public class PriorityScheduler implements Scheduler
+{
+    private final ReadyHeap readyQueue;
+
+    public PriorityScheduler()
+    {
+        readyQueue = new ReadyHeap(new ToLongFunction<ProcessControlBlock>()
+        {
+            public long applyAsLong(ProcessControlBlock pcb)
+            {
+                return -(long)pcb.getNumIO();
+            }
+        });
+    }
+
+    public String getName()
+    {
+        return "ps";
+    }
+
+    public void init(SimulationContext context)
+    {
+    }
+
+    public void admit(ProcessControlBlock pcb)
+    {
+        readyQueue.add(pcb);
+    }
+
+    public ProcessControlBlock pickNext()
+    {
+        return readyQueue.poll();
+    }
+
+    public int size()
+    {
+        return readyQueue.size();
+    }
+}
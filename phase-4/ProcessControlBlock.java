@@ -4,8 +4,8 @@
  * by the CPU.
  */
 
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 /**
  * \brief Enumeration to represent process states.
@@ -19,70 +19,277 @@ enum State
     TERMINATED
 }
 
-class ProcessControlBlock implements Comparable<ProcessControlBlock>
+class ProcessControlBlock
 {
+    private final SimulationContext context;
     private int processID;
     private int numIO;
     private int numOperations;
     private State processState;
-    private Queue<Operation> operationQueue;
+    private OperationQueue operationQueue;
+    private Core core;
+    private long[] memoryBlocks;
+    private int numMemoryBlocks;
+    private PageTable pageTable;
+    private int numDiskRequests;
+    private long remainingNanos;
+    private int feedbackLevel;
+    private long levelSince;
+    private final long[] stateNanos;
+    private long stateSince,
+                 firstRunTime,
+                 finishTime;
 
     /**
      * \brief ProcessControlBloack constructor
-     * \details If the reference to operationQueue
-     *          is null, then it is allocated in the
-     *          constructor.
-     * \param processName Name of new PCB
-     * \param operationQueue LinkedList of all operations
+     * \details The operation queue starts out empty,
+     *          operations are added while the meta data is read.
+     * \param context The simulation the process runs in.
+     * \param processID ID of new PCB
+     * \param processState State the PCB starts in
      */
-    ProcessControlBlock(int processID, State processState)
+    ProcessControlBlock(SimulationContext context, int processID, State processState)
     {
+        this.context = context;
         this.processID = processID;
         this.processState = processState;
-        this.operationQueue = new LinkedList<Operation>();
+        this.operationQueue = new OperationQueue();
+        this.memoryBlocks = new long[0];
+        this.numMemoryBlocks = 0;
+        this.pageTable = null;
+        this.numDiskRequests = 0;
+        this.remainingNanos = 0;
+        this.feedbackLevel = 0;
+        this.levelSince = -1;
+        this.stateNanos = new long[State.values().length];
+        this.stateSince = -1;
+        this.firstRunTime = -1;
+        this.finishTime = -1;
     }
 
     /**
      * \brief Runs the PCB's operation queue.
-     * \details If there is an IO operation in the queue,
-     *          it executes its job in a different thread.
-     *          Otherwise, it executes on main thread.
+     * \details Operations are run on the main thread until the
+     *          process issues an IO operation. At that point the
+     *          process moves to the waiting state and gives up the
+     *          CPU, so the OS can dispatch another process while the
+     *          device does its work. Once the device completes, the
+     *          OS is told to put the process back in the ready queue.
+     *          The core's scheduler decides when the process is
+     *          preempted. If it gives a time slice, the process is asked
+     *          about once it has run that many processor cycles, and a
+     *          run operation that is cut off there is put back at the
+     *          front of the queue with the cycles it has left. If the
+     *          process is kept, it starts a new time slice. A scheduler
+     *          can also ask to be asked after every operation. With
+     *          paging on, a page fault blocks the process on a hard drive
+     *          read of the page, the same way as an IO operation.
+     * \param os The OS that dispatched the process.
+     * \return The state the process is left in: TERMINATED if it has
+     *         run all of its operations, WAITING if it is waiting on IO,
+     *         or READY if it was preempted.
      */
-    public void run()
+    public State run(OperatingSystem os)
     {
+        int timeSlice = core.getTimeSlice(this);
+        int sliceLeft = timeSlice;
+        boolean checksEveryOperation = core.checksEveryOperation();
+
         while (!operationQueue.isEmpty())
         {
-            final Operation currOperation = operationQueue.poll();
+            Operation currOperation = operationQueue.poll();
+            remainingNanos -= getOperationNanos(currOperation);
 
             if (currOperation.type == OperationType.INPUT ||
                 currOperation.type == OperationType.OUTPUT)
             {
+                core.block(this);
+                setProcessState(State.WAITING);
+                startIO(currOperation, os);
+                return State.WAITING;
+            }
 
-                Thread ioThread = new Thread(new Runnable()
-                    {
-                        public void run()
-                        {
-                            ResourceManager.acquireResource(currOperation);
-                            executeOperation(currOperation);
-                            ResourceManager.releaseResource(currOperation);
-                        }
-                    }
-                );
-
-                try {
-                    ioThread.start();
-                    ioThread.join();
-                } catch (InterruptedException e) {
-                    Logger.logError("IO thread was interrupted");
+            else if (timeSlice > 0 && currOperation.type == OperationType.PROCESS &&
+                     currOperation.numCycles > sliceLeft)
+            {
+                int cyclesLeft = currOperation.numCycles - sliceLeft;
+                if (sliceLeft > 0)
+                {
+                    currOperation.numCycles = sliceLeft;
+                    executeOperation(currOperation);
+                }
+                operationQueue.requeueFront(cyclesLeft);
+                remainingNanos += (long)cyclesLeft * getCycleNanos(Device.PROCESSOR);
+                if (core.shouldPreempt(this, true))
+                {
+                    setProcessState(State.READY);
+                    return State.READY;
                 }
+                sliceLeft = timeSlice;
+                continue;
             }
 
+            else if (currOperation.device == Device.BLOCK && context.virtualMemory.isEnabled())
+            {
+                if (!referencePages(currOperation))
+                {
+                    core.block(this);
+                    setProcessState(State.WAITING);
+                    startIO(new Operation(OperationType.INPUT, Device.HARD_DRIVE, 1), os);
+                    return State.WAITING;
+                }
+            }
 
             else
+            {
                 executeOperation(currOperation);
+                if (currOperation.type == OperationType.PROCESS)
+                    sliceLeft -= currOperation.numCycles;
+            }
+
+            if (checksEveryOperation && !operationQueue.isEmpty() &&
+                core.shouldPreempt(this, false))
+            {
+                setProcessState(State.READY);
+                return State.READY;
+            }
+        }
+
+        freeMemory();
+        operationQueue.clear();
+        setProcessState(State.TERMINATED);
+        return State.TERMINATED;
+    }
+
+    /**
+     * \brief Gives how long the operations the process has left take (ns).
+     * \details This is the key shortest remaining time first orders by.
+     */
+    public long getRemainingNanos()
+    {
+        return remainingNanos;
+    }
+
+    /**
+     * \brief Gives the level of the multilevel feedback queue the process is on.
+     * \details Every process goes back to the top level at each boost.
+     *          Rather than every process being visited then, a process
+     *          catches up on the boost it missed when its level is asked
+     *          for, and the time until the boost is counted on its old
+     *          level.
+     */
+    public int getFeedbackLevel()
+    {
+        long interval = context.config.boostInterval * 1000000L;
+        if (feedbackLevel > 0 && interval > 0)
+        {
+            long start = context.metrics.getStartTime();
+            long since = levelSince < 0 ? start : levelSince;
+            long boostTime = start + ((since - start) / interval + 1) * interval;
+            if (boostTime <= context.clock.nanoTime())
+            {
+                context.metrics.recordLevelResidency(feedbackLevel, boostTime - since);
+                feedbackLevel = 0;
+                levelSince = boostTime;
+            }
         }
 
-        Memory.free();
+        return feedbackLevel;
+    }
+
+    /**
+     * \brief Moves the process to a level of the multilevel feedback queue.
+     * \details The time spent on the level it leaves is recorded. Setting
+     *          the same level just records the time up to now.
+     */
+    public void setFeedbackLevel(int level)
+    {
+        long now = context.clock.nanoTime();
+        long since = levelSince < 0 ? context.metrics.getStartTime() : levelSince;
+        context.metrics.recordLevelResidency(feedbackLevel, now - since);
+        feedbackLevel = level;
+        levelSince = now;
+    }
+
+    /**
+     * \brief Gives the number of cycles left in the next operation.
+     * \details Used to report how much of a preempted operation is left.
+     */
+    public int getRemainingCycles()
+    {
+        return operationQueue.peekCycles();
+    }
+
+    /**
+     * \brief Starts an IO operation without waiting for it to finish.
+     * \details In real time the job is handed to the shared IO executor,
+     *          which blocks on the device and then runs the operation.
+     *          In virtual time there are no threads involved, the device
+     *          is granted as soon as it is free and the completion is
+     *          scheduled as an event. Either way the operation is logged
+     *          on the device it was actually granted.
+     * \param op The IO operation.
+     * \param os The OS to notify once the operation is done.
+     */
+    private void startIO(final Operation op, final OperatingSystem os)
+    {
+        final ProcessControlBlock pcb = this;
+        int cylinder = op.device == Device.HARD_DRIVE ? nextCylinder() : 0;
+
+        if (!context.clock.isVirtual())
+        {
+            context.resources.submitWithResource(op, cylinder, new IntConsumer()
+                {
+                    public void accept(int device)
+                    {
+                        executeOperation(op, device);
+                    }
+                },
+                new Runnable()
+                {
+                    public void run()
+                    {
+                        os.wakeProcess(pcb);
+                    }
+                }
+            );
+            return;
+        }
+
+        context.resources.acquireResourceLater(op, cylinder, new IntConsumer()
+            {
+                public void accept(final int device)
+                {
+                    logOperationStart(op, device);
+                    long nanos = getOperationNanos(op) +
+                                 context.resources.getSeekNanos(op, device);
+                    context.metrics.recordOperation(op.device, nanos);
+                    context.events.schedule(nanos, new Runnable()
+                        {
+                            public void run()
+                            {
+                                logOperationEnd(op);
+                                context.resources.releaseResource(op, device);
+                                os.wakeProcess(pcb);
+                            }
+                        }
+                    );
+                }
+            }
+        );
+    }
+
+    /**
+     * \brief Getter and setter for the core the process last ran on.
+     */
+    public Core getCore()
+    {
+        return core;
+    }
+
+    public void setCore(Core core)
+    {
+        this.core = core;
     }
 
     /**
@@ -103,12 +310,56 @@ class ProcessControlBlock implements Comparable<ProcessControlBlock>
 
     /**
      * \brief Setter for process state.
+     * \details The time spent in the state being left is added up for
+     *          the scheduling metrics. Processes are loaded before the
+     *          simulation starts, so their first state counts from the
+     *          start. Leaving the waiting state ends a wait on IO.
      */
     public void setProcessState(State processState)
     {
+        long now = context.clock.nanoTime();
+        long since = stateSince < 0 ? context.metrics.getStartTime() : stateSince;
+
+        stateNanos[this.processState.ordinal()] += now - since;
+        if (this.processState == State.WAITING)
+            context.metrics.recordIOLatency(now - since);
+        if (processState == State.RUNNING && firstRunTime < 0)
+            firstRunTime = now;
+        if (processState == State.TERMINATED)
+            finishTime = now;
+
+        stateSince = now;
         this.processState = processState;
     }
 
+    /**
+     * \brief Getters for the times the scheduling metrics use.
+     */
+    public long getStateNanos(State state)
+    {
+        return stateNanos[state.ordinal()];
+    }
+
+    public long getFirstRunTime()
+    {
+        return firstRunTime;
+    }
+
+    public long getFinishTime()
+    {
+        return finishTime;
+    }
+
+    public int getNumIO()
+    {
+        return numIO;
+    }
+
+    public int getNumOperations()
+    {
+        return numOperations;
+    }
+
     /**
      * \brief Increments number of IO operations.
      */
@@ -126,7 +377,9 @@ class ProcessControlBlock implements Comparable<ProcessControlBlock>
     }
 
     /**
-     * \brief Adds operation to the end of LinkedList.
+     * \brief Adds operation to the end of the operation queue.
+     * \details Only the operation's type, name code and cycles
+     *          are stored, the object itself is not kept.
      * \param op New operation.
      */
     public void addOperation(Operation op)
@@ -135,52 +388,216 @@ class ProcessControlBlock implements Comparable<ProcessControlBlock>
     }
 
     /**
-     * \brief Processes operation in front of LinkedList.
+     * \brief Gives the process all of its operations at once.
+     * \details Used when loading a compiled workload, where the
+     *          operations are already counted and packed.
+     * \param operations The process's operations.
+     * \param numIO How many of them are IO operations.
+     */
+    public void loadOperations(OperationQueue operations, int numIO)
+    {
+        this.operationQueue = operations;
+        this.numIO = numIO;
+        this.numOperations = operations.size();
+        this.remainingNanos = operations.getServiceNanos(context.config);
+    }
+
+    /**
+     * \brief Called once every operation has been added.
+     * \details Frees the unused space in the operation queue and works
+     *          out how long the operations take altogether.
+     */
+    public void finishLoading()
+    {
+        operationQueue.trimToSize();
+        remainingNanos = operationQueue.getServiceNanos(context.config);
+    }
+
+    /**
+     * \brief Runs a block memory operation with paging on.
+     * \details Each cycle is one page reference. If a reference is to a
+     *          page that is not loaded, the operation is cut off after it,
+     *          and the cycles it has left are put back at the front of the
+     *          queue, to run once the page has been read in.
+     * \return True if the operation ran to the end, false if it stopped
+     *         at a page fault.
+     */
+    private boolean referencePages(Operation op)
+    {
+        PageTable table = getPageTable();
+        long nanos = 0;
+        int numCycles = 0;
+
+        while (numCycles < op.numCycles && !table.hasPageFault())
+        {
+            nanos += context.virtualMemory.reference(table);
+            numCycles++;
+        }
+
+        int cyclesLeft = op.numCycles - numCycles;
+        op.numCycles = numCycles;
+        executeOperation(op, -1, nanos);
+        if (!table.hasPageFault())
+            return true;
+
+        if (cyclesLeft > 0)
+        {
+            operationQueue.requeueFront(cyclesLeft);
+            remainingNanos += (long)cyclesLeft * getCycleNanos(Device.BLOCK);
+        }
+        return false;
+    }
+
+    /**
+     * \brief Processes operation in front of the operation queue.
      * \details Loops for required amount of cycles and
      *          then waits for the required amount of time
      *          for cycle(s). The logger stores the operation's elapsed
      *          time in a local variable so the time in both logs
      *          is consistent. It is divided by 1000 to get the value in
-     *          seconds.
-     */
-    public final void executeOperation(Operation op)
-    {
-        Timer tempTimer = new Timer();
-        double waitTime = (double)(op.numCycles * Configuration.getCycleTime(op.name)) / 1000.0;
-
-        if (op.name.equals("allocate"))
-            Logger.log("Process " + processID + ": allocating " + op.typeToToken());
-        else if (op.name.equals("run"))
-            Logger.log("Process " + processID + ": start processing action");
-        else if (op.name.equals("projector"))
-            Logger.log("Process " + processID + ": start " + op.name + " " +
-                       op.typeToToken() + " on PROJ " + ResourceManager.getCurrentProjector());
-        else if (op.name.equals("hard drive"))
-            Logger.log("Process " + processID + ": start " + op.name + " " +
-                       op.typeToToken() + " on HDD " + ResourceManager.getCurrentHardDrive());
-        else
-            Logger.log("Process " + processID + ": start " + op.name + " " + op.typeToToken());
+     *          seconds. In virtual mode there is no waiting, the end
+     *          of the operation is scheduled as an event instead and
+     *          the event queue is run up until it fires. With disk
+     *          scheduling on, hard drive operations also take the time to
+     *          seek to their cylinder.
+     */
+    public final void executeOperation(final Operation op)
+    {
+        executeOperation(op, -1);
+    }
 
-        tempTimer.start();
-        while (tempTimer.getElapsedTime() < waitTime);
+    /**
+     * \brief Processes an operation on the device it was granted.
+     * \param device Index of the device, or -1 if it does not use one.
+     */
+    public final void executeOperation(final Operation op, int device)
+    {
+        executeOperation(op, device,
+                         getOperationNanos(op) + context.resources.getSeekNanos(op, device));
+    }
+
+    /**
+     * \brief Processes an operation that takes a given time.
+     * \param nanos How long the operation takes (ns).
+     */
+    private void executeOperation(final Operation op, int device, long nanos)
+    {
+        Timer tempTimer = new Timer(context.clock);
+        context.metrics.recordOperation(op.device, nanos);
+
+        logOperationStart(op, device);
 
-        if (op.name.equals("allocate"))
-            Logger.log("Process " + processID + ": memory allocated at " + Memory.allocate());
-        else if (op.name.equals("run"))
-            Logger.log("Process " + processID + ": end processing action");
+        if (context.clock.isVirtual())
+        {
+            Event completion = context.events.schedule(nanos, new Runnable()
+                {
+                    public void run()
+                    {
+                        logOperationEnd(op);
+                    }
+                }
+            );
+            context.events.runUntil(completion);
+        }
         else
-            Logger.log("Process " + processID + ": end " + op.name + " " + op.typeToToken());
+        {
+            tempTimer.start();
+            while (tempTimer.getElapsedNanos() < nanos);
+            logOperationEnd(op);
+        }
     }
 
     /**
-     * \brief Used to determine ordering for the priority queues.
+     * \brief Gives the amount of time an operation takes (ns).
      */
-    public int compareTo(ProcessControlBlock other)
+    private long getOperationNanos(Operation op)
     {
-        if (Configuration.scheduleType == ScheduleType.PS)
-            return other.numIO - this.numIO;
-        else if (Configuration.scheduleType == ScheduleType.SJF)
-            return this.numOperations - other.numOperations;
-        else return 0;
+        return op.numCycles * getCycleNanos(op.device);
+    }
+
+    /**
+     * \brief Gives the amount of time one cycle of a device takes (ns).
+     */
+    private long getCycleNanos(Device device)
+    {
+        return context.config.getCycleTime(device) * 1000000L;
+    }
+
+    /**
+     * \brief Picks the cylinder the next hard drive operation reads or writes.
+     * \details The process ID and the number of requests so far are
+     *          hashed, which scatters requests over the whole disk while
+     *          keeping every run the same.
+     */
+    private int nextCylinder()
+    {
+        long hash = ((long)processID << 32) + numDiskRequests++;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int)Math.floorMod(hash, (long)context.config.diskCylinders);
+    }
+
+    /**
+     * \brief Logs the start of an operation.
+     * \param device The device the operation is running on, if any.
+     */
+    private void logOperationStart(Operation op, int device)
+    {
+        context.logger.log(LogEvent.OPERATION_START, processID, op, device);
+    }
+
+    /**
+     * \brief Logs the end of an operation.
+     * \details Memory is allocated here, so the address is
+     *          handed out when the operation completes. A faulted page
+     *          is loaded here too, once the hard drive has read it in,
+     *          which is the only hard drive operation a process can have
+     *          while it has a page fault.
+     */
+    private void logOperationEnd(Operation op)
+    {
+        long address = 0;
+        if (op.device == Device.HARD_DRIVE && pageTable != null && pageTable.hasPageFault())
+            address = context.virtualMemory.loadPage(pageTable);
+        else if (op.device == Device.ALLOCATE && context.virtualMemory.isEnabled())
+            address = context.virtualMemory.allocatePage(getPageTable());
+        else if (op.device == Device.ALLOCATE)
+        {
+            address = context.memory.allocate(processID);
+            if (numMemoryBlocks == memoryBlocks.length)
+                memoryBlocks = Arrays.copyOf(memoryBlocks, Math.max(4, numMemoryBlocks * 2));
+            memoryBlocks[numMemoryBlocks++] = address;
+        }
+
+        context.logger.log(LogEvent.OPERATION_END, processID, op, address);
+    }
+
+    /**
+     * \brief Gives the process's page table, creating it on first use.
+     */
+    private PageTable getPageTable()
+    {
+        if (pageTable == null)
+            pageTable = new PageTable(processID);
+        return pageTable;
+    }
+
+    /**
+     * \brief Frees every block of memory the process was allocated.
+     * \details With paging on, these are the frames its pages are in.
+     */
+    private void freeMemory()
+    {
+        if (pageTable != null)
+        {
+            context.virtualMemory.release(pageTable);
+            pageTable = null;
+        }
+
+        for (int i = 0; i < numMemoryBlocks; i++)
+            context.memory.free(processID, memoryBlocks[i]);
+        memoryBlocks = new long[0];
+        numMemoryBlocks = 0;
     }
 }
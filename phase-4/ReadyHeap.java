@@ -0,0 +1,367 @@
+/**
+ * Ready queue ordered by a priority key, smallest first.
+ * Shortest remaining time first has to find the process with the least
+ * service time left on every dispatch and every preemption check, and
+ * the priority schedulers order every ready process by a key of their
+ * own. Each key is worked out once, when the process is added, and kept
+ * as a primitive long in the heap, so comparing two processes never
+ * goes back to the processes or the configuration. A key never has to
+ * change while its process is in the heap, since only a running process
+ * uses up its time, and it is taken out to run and added again with its
+ * new key. The heap knows where each process is in it, so taking one
+ * out from the middle is O(log n), as is adding and polling, while
+ * looking at the first is O(1). Processes with the same key come out in
+ * the order they went in.
+ *
+ * With millions of ready processes the heap is far bigger than the
+ * cache, and the time goes on fetching entries rather than comparing
+ * them. Every entry has four children instead of two, so the heap is
+ * half as deep. The key and the arrival number of an entry are packed
+ * into a single long, the key in the high bits, so ordering two entries
+ * is one comparison, and the four children of an entry sit in 32 bytes
+ * of one array. Arrival numbers are renumbered from 0 when they run out
+ * of bits, which keeps their order. If the heap holds so many processes
+ * that the bits would run out again soon, or not be enough at all, the
+ * arrival numbers move out to an array of their own beside the entries,
+ * and are only compared when two keys are the same, so the heap has no
+ * limit on its size. The position of every process is kept in an array
+ * indexed by process ID. IDs are handed out from 1, so the array has
+ * few gaps, and moving an entry never touches the process.
+ */
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+class ReadyHeap extends AbstractQueue<ProcessControlBlock>
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int ARITY_BITS = 2;
+
+    /** Low bits of an entry that hold its arrival number. */
+    private static final int ARRIVAL_BITS = 24;
+    private static final long ARRIVAL_MASK = (1L << ARRIVAL_BITS) - 1;
+
+    /** Range of keys that fit above the arrival number. */
+    static final long MAX_KEY = Long.MAX_VALUE >> ARRIVAL_BITS;
+    static final long MIN_KEY = Long.MIN_VALUE >> ARRIVAL_BITS;
+
+    private final ToLongFunction<ProcessControlBlock> keyFunction;
+    private ProcessControlBlock[] processes;
+    private int[] processIDs,
+                  positions;
+    private long[] entries,
+                   arrivals;
+    private int size;
+    private long nextArrival;
+
+    /**
+     * \brief ReadyHeap constructor.
+     * \details The heap starts out empty.
+     * \param keyFunction Gives the key a process is added with, between
+     *        MIN_KEY and MAX_KEY.
+     */
+    ReadyHeap(ToLongFunction<ProcessControlBlock> keyFunction)
+    {
+        this.keyFunction = keyFunction;
+        processes = new ProcessControlBlock[INITIAL_CAPACITY];
+        processIDs = new int[INITIAL_CAPACITY];
+        positions = new int[INITIAL_CAPACITY];
+        entries = new long[INITIAL_CAPACITY];
+        arrivals = null;
+        size = 0;
+        nextArrival = 0;
+    }
+
+    /**
+     * \brief Adds a process, keyed by the key function.
+     * \param pcb A process that is not in any heap.
+     * \throws IllegalArgumentException If its key is out of range.
+     */
+    public boolean offer(ProcessControlBlock pcb)
+    {
+        long key = keyFunction.applyAsLong(pcb);
+        if (key < MIN_KEY || key > MAX_KEY)
+            throw new IllegalArgumentException("Key " + key + " of process " + pcb.getProcessID() +
+                                               " is out of range");
+
+        if (size == processes.length)
+        {
+            int capacity = size * 2;
+            processes = Arrays.copyOf(processes, capacity);
+            processIDs = Arrays.copyOf(processIDs, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+            if (arrivals != null)
+                arrivals = Arrays.copyOf(arrivals, capacity);
+        }
+        int processID = pcb.getProcessID();
+        if (processID >= positions.length)
+            positions = Arrays.copyOf(positions, Math.max(processID + 1, positions.length * 2));
+
+        if (arrivals == null && nextArrival > ARRIVAL_MASK)
+        {
+            if (size > ARRIVAL_MASK >> 1)
+                separateArrivals();
+            else
+                renumberArrivals();
+        }
+
+        if (arrivals == null)
+            siftUp(size++, pcb, processID, (key << ARRIVAL_BITS) | nextArrival++, 0);
+        else
+            siftUp(size++, pcb, processID, key << ARRIVAL_BITS, nextArrival++);
+        return true;
+    }
+
+    /**
+     * \brief Takes the process with the smallest key.
+     * \return The process, or null if the heap is empty.
+     */
+    public ProcessControlBlock poll()
+    {
+        if (size == 0)
+            return null;
+
+        ProcessControlBlock top = processes[0];
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * \brief Gives the process with the smallest key.
+     * \return The process, or null if the heap is empty.
+     */
+    public ProcessControlBlock peek()
+    {
+        return size == 0 ? null : processes[0];
+    }
+
+    /**
+     * \brief Gives the key of the process peek() returns.
+     * \return The key, or Long.MAX_VALUE if the heap is empty.
+     */
+    public long peekKey()
+    {
+        return size == 0 ? Long.MAX_VALUE : entries[0] >> ARRIVAL_BITS;
+    }
+
+    public boolean remove(Object o)
+    {
+        int i = o instanceof ProcessControlBlock ? indexOf((ProcessControlBlock)o) : -1;
+        if (i < 0)
+            return false;
+
+        removeAt(i);
+        return true;
+    }
+
+    public boolean contains(Object o)
+    {
+        return o instanceof ProcessControlBlock && indexOf((ProcessControlBlock)o) >= 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * \brief Iterates over the processes in heap order, not key order.
+     */
+    public Iterator<ProcessControlBlock> iterator()
+    {
+        return new Iterator<ProcessControlBlock>()
+        {
+            private int next = 0;
+
+            public boolean hasNext()
+            {
+                return next < size;
+            }
+
+            public ProcessControlBlock next()
+            {
+                if (next >= size)
+                    throw new NoSuchElementException();
+                return processes[next++];
+            }
+        };
+    }
+
+    /**
+     * \brief Finds where a process is in the heap.
+     * \details Positions are left behind when a process is taken out,
+     *          so the position is only right if the process is there.
+     * \return Its index, or -1 if it is not in this heap.
+     */
+    private int indexOf(ProcessControlBlock pcb)
+    {
+        int processID = pcb.getProcessID();
+        if (processID < 0 || processID >= positions.length)
+            return -1;
+        int i = positions[processID];
+        return i < size && processes[i] == pcb ? i : -1;
+    }
+
+    /**
+     * \brief Numbers the arrivals of the processes in the heap from 0.
+     * \details The processes keep the order they arrived in, so no entry
+     *          moves relative to one with the same key, and the heap is
+     *          still in order.
+     */
+    private void renumberArrivals()
+    {
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++)
+            order[i] = ((entries[i] & ARRIVAL_MASK) << ARRIVAL_BITS) | i;
+        Arrays.sort(order);
+
+        for (int arrival = 0; arrival < size; arrival++)
+        {
+            int i = (int)(order[arrival] & ARRIVAL_MASK);
+            entries[i] = (entries[i] & ~ARRIVAL_MASK) | arrival;
+        }
+        nextArrival = size;
+    }
+
+    /**
+     * \brief Moves the arrival numbers out of the entries into their own array.
+     * \details Only done once, when the heap is at least half as big as
+     *          the arrival numbers that fit in an entry. Every entry keeps
+     *          the arrival number it has, and later ones carry on from
+     *          there, so the order does not change. From then on arrival
+     *          numbers never run out.
+     */
+    private void separateArrivals()
+    {
+        arrivals = new long[entries.length];
+        for (int i = 0; i < size; i++)
+        {
+            arrivals[i] = entries[i] & ARRIVAL_MASK;
+            entries[i] &= ~ARRIVAL_MASK;
+        }
+    }
+
+    /**
+     * \brief Checks if an entry comes before the one at an index.
+     * \details While the arrival numbers are packed into the entries no
+     *          two entries are equal, so the arrival numbers are only
+     *          looked at once they have their own array.
+     */
+    private boolean precedes(long entry, long arrival, int i)
+    {
+        return entry < entries[i] || (entry == entries[i] && arrival < arrivals[i]);
+    }
+
+    /**
+     * \brief Gives the arrival number of the entry at an index, if it has its own.
+     */
+    private long arrivalAt(int i)
+    {
+        return arrivals == null ? 0 : arrivals[i];
+    }
+
+    /**
+     * \brief Takes out the process at an index.
+     * \details The last process fills the gap and is moved to where its
+     *          key belongs.
+     */
+    private void removeAt(int i)
+    {
+        size--;
+
+        ProcessControlBlock last = processes[size];
+        int processID = processIDs[size];
+        long entry = entries[size];
+        long arrival = arrivalAt(size);
+        processes[size] = null;
+        if (i == size)
+            return;
+
+        if (i > 0 && precedes(entry, arrival, (i - 1) >>> ARITY_BITS))
+            siftUp(i, last, processID, entry, arrival);
+        else
+            siftDown(i, last, processID, entry, arrival);
+    }
+
+    /**
+     * \brief Puts a process into the heap at or above an index.
+     * \details The entries it goes before are moved down into the hole
+     *          one at a time, and the process is written once where it
+     *          belongs, instead of being swapped at every step.
+     */
+    private void siftUp(int i, ProcessControlBlock pcb, int processID, long entry, long arrival)
+    {
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> ARITY_BITS;
+            if (!precedes(entry, arrival, parent))
+                break;
+            move(parent, i);
+            i = parent;
+        }
+        set(i, pcb, processID, entry, arrival);
+    }
+
+    /**
+     * \brief Puts a process into the heap at or below an index.
+     */
+    private void siftDown(int i, ProcessControlBlock pcb, int processID, long entry, long arrival)
+    {
+        while (true)
+        {
+            int first = (i << ARITY_BITS) + 1;
+            if (first >= size)
+                break;
+
+            int child = first;
+            int end = Math.min(first + (1 << ARITY_BITS), size);
+            if (arrivals == null)
+            {
+                long least = entries[first];
+                for (int c = first + 1; c < end; c++)
+                {
+                    if (entries[c] < least)
+                    {
+                        child = c;
+                        least = entries[c];
+                    }
+                }
+            }
+            else
+            {
+                for (int c = first + 1; c < end; c++)
+                {
+                    if (precedes(entries[c], arrivals[c], child))
+                        child = c;
+                }
+            }
+            long childEntry = entries[child];
+            if (childEntry > entry || (childEntry == entry && arrivalAt(child) > arrival))
+                break;
+            move(child, i);
+            i = child;
+        }
+        set(i, pcb, processID, entry, arrival);
+    }
+
+    /**
+     * \brief Copies the entry at one index over another.
+     */
+    private void move(int from, int to)
+    {
+        set(to, processes[from], processIDs[from], entries[from], arrivalAt(from));
+    }
+
+    private void set(int i, ProcessControlBlock pcb, int processID, long entry, long arrival)
+    {
+        processes[i] = pcb;
+        processIDs[i] = processID;
+        entries[i] = entry;
+        if (arrivals != null)
+            arrivals[i] = arrival;
+        positions[processID] = i;
+    }
+}
@@ -1,112 +1,280 @@
 /**
  * This class contains the resource management module. This controls the
- * simulation's access to hardware resources by defining a critical section
- * with the use of semaphore locks. This is definitely not an ideal algorithm, and
- * works best on simulations that run sequentially and do not perform time slicing.
- * I am planning on refactoring this module for the next phase. So far the only hardware
- * devices that are implemented are projectors and hard drives. Monitors and keyboards are
- * accounted for but no locking is done for them. This is in order to account for error handling
- * when the operation passed in doesn't have a valid resource name.
+ * simulation's access to hardware resources. Each kind of lockable device
+ * has a pool of devices, and an operation is given whichever device in the
+ * pool is free, which is also the device it is logged as running on. So far
+ * the only hardware devices that are implemented are projectors and hard
+ * drives. Monitors and keyboards are accounted for but no locking is done
+ * for them. This is in order to account for error handling when the
+ * operation passed in doesn't have a valid resource name.
+ *
+ * With disk scheduling turned on, hard drives are not pooled. Each drive
+ * has its own request queue, and an operation joins the queue of the
+ * drive with the least work, where the drive's scheduling policy decides
+ * when it is served.
  */
 
-import java.util.concurrent.Semaphore;
-import java.util.LinkedList;
+import java.util.function.IntConsumer;
 
 public class ResourceManager
 {
-    private static Semaphore[] projectorLocks = new Semaphore[Configuration.projectorQuantity];
-    private static Semaphore[] hardDriveLocks = new Semaphore[Configuration.hardDriveQuantity];
-    private static int projectorIndex = 0;
-    private static int hardDriveIndex = 0;
+    private final SimulationContext context;
+    private final DevicePool projectors;
+    private final DevicePool hardDrives;
+    private final DiskDrive[] diskDrives;
 
     /**
-     * \brief Initializs necessary fields before using any class utlities.
-     * \details Allocates memory to each object in the arrays.
+     * \brief ResourceManager constructor.
+     * \details Creates the device pools, with every device free, and
+     *          the hard drives' request queues if disk scheduling is on.
+     *          This depends upon the context's configuration being
+     *          created first.
+     * \param context The simulation the devices belong to.
      */
-    public static void init()
+    ResourceManager(SimulationContext context)
     {
-        for (int i = 0; i < Configuration.projectorQuantity; i++)
-            projectorLocks[i] = new Semaphore(1);
+        Configuration config = context.config;
+        this.context = context;
+        projectors = new DevicePool(context, "projector", config.projectorQuantity);
+        hardDrives = new DevicePool(context, "hard drive", config.hardDriveQuantity);
 
-        for (int i = 0; i < Configuration.hardDriveQuantity; i++)
-            hardDriveLocks[i] = new Semaphore(1);
+        if (config.diskScheduling == DiskSchedulingType.NONE)
+            diskDrives = new DiskDrive[0];
+        else
+        {
+            diskDrives = new DiskDrive[config.hardDriveQuantity];
+            for (int i = 0; i < diskDrives.length; i++)
+                diskDrives[i] = new DiskDrive(context, i);
+        }
     }
 
     /**
-     * \brief Acquires the next available resource.
+     * \brief Acquires a free device, blocking until there is one.
      * \details After being acquired, the resource must be released,
-     *          in order to use it again.
+     *          in order to use it again. Since IO operations can now
+     *          overlap, the index of the device that was acquired is
+     *          returned, so the same device is the one that gets released.
+     * \return The index of the acquired device, or -1 if the operation
+     *         does not need a lock.
+     */
+    public int acquireResource(Operation op)
+    {
+        return acquireResource(op, 0);
+    }
+
+    /**
+     * \brief Acquires a device for an operation on a given cylinder.
+     * \param cylinder The hard drive cylinder the operation reads or
+     *        writes, only used with disk scheduling.
+     */
+    public int acquireResource(Operation op, int cylinder)
+    {
+        if (usesDiskQueue(op))
+            return leastLoadedDrive().acquire(cylinder);
+
+        DevicePool pool = getPool(op);
+        return pool == null ? -1 : pool.acquire();
+    }
+
+    /**
+     * \brief Releases an acquired resource.
+     * \details If there is an operation waiting on the resource,
+     *          it is handed the device.
+     * \param op The IO operation that held the resource.
+     * \param device The index returned when the resource was acquired.
      */
-    public static void acquireResource(Operation op)
+    public void releaseResource(Operation op, int device)
     {
-        switch (op.name)
+        if (usesDiskQueue(op))
         {
-            case "projector":
-                try {
-                    projectorLocks[projectorIndex].acquire();
-                } catch (InterruptedException e) {
-                    Logger.logError("Projector operation interrupted");
-                }
-                break;
+            diskDrives[device].release();
+            return;
+        }
 
-            case "hard drive":
-                try {
-                    hardDriveLocks[hardDriveIndex].acquire();
-                } catch (InterruptedException e) {
-                    Logger.logError("Hard drive operation interrupted");
-                }
-                break;
+        DevicePool pool = getPool(op);
+        if (pool != null)
+            pool.release(device);
+    }
 
-            case "keyboard": break;
-            case "monitor": break;
+    /**
+     * \brief Runs work while holding the resource the operation needs.
+     * \details The work is handed to the shared IO executor and this
+     *          returns right away. The resource is acquired and released
+     *          on the executor's thread, and the completion is run once
+     *          the resource has been released.
+     * \param op The IO operation that needs a resource.
+     * \param cylinder The hard drive cylinder the operation uses.
+     * \param work The work to perform once the resource is acquired,
+     *        given the index of the device, or -1 if there is no lock.
+     * \param completion Run after the resource is released.
+     */
+    public void submitWithResource(final Operation op, final int cylinder,
+                                   final IntConsumer work, final Runnable completion)
+    {
+        context.io.submit(new Runnable()
+            {
+                public void run()
+                {
+                    int device = acquireResource(op, cylinder);
+                    work.accept(device);
+                    releaseResource(op, device);
+                    completion.run();
+                }
+            }
+        );
+    }
 
-            default:
-                Logger.logError("Operation not valid, unable to acquire resource");
+    /**
+     * \brief Acquires a resource without blocking the caller.
+     * \details Used in virtual time, where everything runs on a single
+     *          thread and blocking on a device would never return.
+     *          If a device is free the callback runs right away,
+     *          otherwise it is queued and run when a device is released.
+     *          Waiters are served in the order they arrived, or in the
+     *          order the disk scheduling policy picks.
+     * \param op The IO operation that needs a resource.
+     * \param cylinder The hard drive cylinder the operation uses.
+     * \param onAcquired Run once the resource belongs to the operation,
+     *        given the index of the device, or -1 if there is no lock.
+     */
+    public void acquireResourceLater(Operation op, int cylinder, IntConsumer onAcquired)
+    {
+        if (usesDiskQueue(op))
+        {
+            leastLoadedDrive().acquireLater(cylinder, onAcquired);
+            return;
         }
+
+        DevicePool pool = getPool(op);
+        if (pool == null)
+            onAcquired.accept(-1);
+        else
+            pool.acquireLater(onAcquired);
     }
 
     /**
-     * \brief Releases an acquired resource.
+     * \brief Gives the time an operation spends seeking on its device (ns).
+     * \details Only hard drives with disk scheduling on have a seek time.
+     * \param device The index returned when the resource was acquired.
+     */
+    public long getSeekNanos(Operation op, int device)
+    {
+        return usesDiskQueue(op) ? diskDrives[device].getSeekNanos() : 0;
+    }
+
+    /**
+     * \brief Checks if hard drives have their own request queues.
+     */
+    public boolean isDiskSchedulingEnabled()
+    {
+        return diskDrives.length > 0;
+    }
+
+    /**
+     * \brief Describes how the hard drive queues did over the simulation.
      */
-    public static void releaseResource(Operation op)
+    public String getDiskReport()
     {
-        switch (op.name)
+        long numServed = 0,
+             totalSeekDistance = 0,
+             totalWaitNanos = 0;
+        int peakQueueLength = 0;
+
+        for (DiskDrive drive : diskDrives)
         {
-            case "projector":
-                projectorLocks[projectorIndex].release();
-                if (projectorIndex == Configuration.projectorQuantity-1)
-                    projectorIndex = 0;
-                else projectorIndex++;
-                break;
-
-            case "hard drive":
-                hardDriveLocks[hardDriveIndex].release();
-                if (hardDriveIndex == Configuration.hardDriveQuantity-1)
-                    hardDriveIndex = 0;
-                else hardDriveIndex++;
-                break;
-
-            case "keyboard": break;
-            case "monitor": break;
+            numServed += drive.getNumServed();
+            totalSeekDistance += drive.getTotalSeekDistance();
+            totalWaitNanos += drive.getTotalWaitNanos();
+            peakQueueLength = Math.max(peakQueueLength, drive.getPeakQueueLength());
+        }
 
-            default:
-                Logger.logError("Operation not valid, unable to release resouce");
+        double averageSeek = numServed == 0 ? 0.0 : (double)totalSeekDistance / numServed;
+        double averageWait = numServed == 0 ? 0.0 : totalWaitNanos / 1e9 / numServed;
+
+        return "disk " + context.config.diskScheduling.toString() + " on " + diskDrives.length +
+               " drives, " + numServed + " requests, average seek " +
+               String.format("%.1f", averageSeek) + " cylinders, seek time " +
+               String.format("%.6f", totalSeekDistance * context.config.seekTime / 1e6) +
+               " (sec), average wait " + String.format("%.6f", averageWait) +
+               " (sec), peak queue " + peakQueueLength;
+    }
+
+    /**
+     * \brief Returns the number of lockable devices.
+     * \details Used to size the IO executor's thread pool.
+     */
+    public int getDeviceCount()
+    {
+        return Math.max(1, context.config.projectorQuantity + context.config.hardDriveQuantity);
+    }
+
+    /**
+     * \brief Checks if an operation goes through a hard drive's request queue.
+     */
+    private boolean usesDiskQueue(Operation op)
+    {
+        return op.device == Device.HARD_DRIVE && diskDrives.length > 0;
+    }
+
+    /**
+     * \brief Finds the hard drive with the fewest requests.
+     * \details Ties go to the lowest numbered drive.
+     */
+    private DiskDrive leastLoadedDrive()
+    {
+        DiskDrive best = diskDrives[0];
+        int bestLoad = best.getLoad();
+
+        for (int i = 1; i < diskDrives.length && bestLoad > 0; i++)
+        {
+            int load = diskDrives[i].getLoad();
+            if (load < bestLoad)
+            {
+                best = diskDrives[i];
+                bestLoad = load;
+            }
         }
+
+        return best;
     }
 
     /**
-     * \brief Returns the current projector in use.
+     * \brief Checks if an IO device can be acquired by an operation.
+     * \details Scanners have a cycle time but no devices yet, so an
+     *          operation on one is not valid.
      */
-    public static int getCurrentProjector()
+    static boolean isSupported(Device device)
     {
-        return projectorIndex;
+        switch (device)
+        {
+            case PROJECTOR: case HARD_DRIVE: case KEYBOARD: case MONITOR:
+                return true;
+
+            default:
+                return false;
+        }
     }
 
     /**
-     * \brief Returns the current hardDrive in use.
+     * \brief Finds the pool of devices an operation runs on.
+     * \return The pool, or null if the operation does not need a lock.
      */
-    public static int getCurrentHardDrive()
+    private DevicePool getPool(Operation op)
     {
-        return hardDriveIndex;
+        switch (op.device)
+        {
+            case PROJECTOR:
+                return projectors;
+
+            case HARD_DRIVE:
+                return hardDrives;
+
+            case KEYBOARD: case MONITOR:
+                return null;
+
+            default:
+                context.logger.logError("Operation not valid, unable to acquire resource");
+                return null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+/**
+ * Round robin scheduling.
+ * Processes run in first come first served order, but each gives up
+ * the core once it has run for the processor quantum and goes to the
+ * back of the queue.
+ */
+
+public class RoundRobinScheduler extends FcfsScheduler
+{
+    private int quantum;
+
+    public String getName()
+    {
+        return "rr";
+    }
+
+    /**
+     * \brief Checks the quantum, since a quantum of zero would never run anything.
+     */
+    public void checkSettings(Configuration config)
+    {
+        if (config.processorQuantumNum < 1)
+            throw new SimulationException("Round robin needs a processor quantum of at least one cycle\n" +
+                                          "Exiting with return code 1");
+    }
+
+    public void init(SimulationContext context)
+    {
+        quantum = context.config.processorQuantumNum;
+    }
+
+    public int getTimeSlice(ProcessControlBlock pcb)
+    {
+        return quantum;
+    }
+}
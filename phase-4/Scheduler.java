@@ -0,0 +1,153 @@
+/**
+ * CPU scheduling algorithm of a core.
+ * Each core has its own scheduler, which holds the core's ready
+ * processes and picks which one runs next. The core tells it when a
+ * process is admitted, preempted, blocks on IO, wakes up from IO, and
+ * exits, and the running process asks it how long it may run and
+ * whether it should give up the core. Everything apart from admit,
+ * pickNext and size has a default that suits a policy which never
+ * preempts.
+ *
+ * Schedulers are found with a ServiceLoader, which reads the classes
+ * listed in META-INF/services/Scheduler on the class path, and the one
+ * whose name matches the CPU scheduling code in the configuration is
+ * used. Adding a scheduling algorithm takes a class and a line in that
+ * file, and nothing else in the simulation has to change. A scheduler
+ * class must be public and have a public constructor that takes no
+ * arguments.
+ *
+ * A core only calls its scheduler while it holds the core's lock, so a
+ * scheduler does not have to be thread safe. Processes move between
+ * cores when they are stolen, so anything a scheduler keeps about a
+ * process has to live in the process.
+ */
+
+import java.util.ServiceLoader;
+
+public interface Scheduler
+{
+    /**
+     * \brief Gives the CPU scheduling code that selects the scheduler.
+     * \return The code, in lower case.
+     */
+    String getName();
+
+    /**
+     * \brief Checks the configuration has what the scheduler needs.
+     * \details Called when the configuration is read, before any
+     *          scheduler is made, so a bad setting is reported the same
+     *          way as any other.
+     * \throws SimulationException If a setting will not work.
+     */
+    default void checkSettings(Configuration config)
+    {
+    }
+
+    /**
+     * \brief Sets the scheduler up for a simulation.
+     * \details Called once, before any process is admitted.
+     */
+    void init(SimulationContext context);
+
+    /**
+     * \brief Adds a process that is ready to run.
+     */
+    void admit(ProcessControlBlock pcb);
+
+    /**
+     * \brief Takes the process that should run next.
+     * \details Also used to give a process to a core that steals it.
+     * \return The process, or null if none is ready.
+     */
+    ProcessControlBlock pickNext();
+
+    /**
+     * \brief Gives the number of ready processes.
+     */
+    int size();
+
+    /**
+     * \brief Gives how many processor cycles a process may run for.
+     * \details Called once each time the process is dispatched. Once
+     *          it has run for this many cycles, shouldPreempt() is asked
+     *          whether it gives up the core.
+     * \return The number of cycles, or 0 to let it run until it blocks
+     *         or exits.
+     */
+    default int getTimeSlice(ProcessControlBlock pcb)
+    {
+        return 0;
+    }
+
+    /**
+     * \brief Checks if shouldPreempt() is to be asked after every operation.
+     * \details Only schedulers that can preempt a process part way
+     *          through its time slice need this.
+     */
+    default boolean checksEveryOperation()
+    {
+        return false;
+    }
+
+    /**
+     * \brief Checks if the running process should give up the core.
+     * \param pcb The running process, which is not in the scheduler.
+     * \param isSliceUsed True if the process has used up its time
+     *        slice, false if it has only finished an operation.
+     * \return True to preempt the process. If it is kept at the end of
+     *         its time slice, it starts a new one.
+     */
+    default boolean shouldPreempt(ProcessControlBlock pcb, boolean isSliceUsed)
+    {
+        return isSliceUsed;
+    }
+
+    /**
+     * \brief Puts back a process that was preempted.
+     */
+    default void onPreempt(ProcessControlBlock pcb)
+    {
+        admit(pcb);
+    }
+
+    /**
+     * \brief Called when the running process blocks on IO.
+     * \details The process is not in the scheduler while it waits.
+     */
+    default void onBlock(ProcessControlBlock pcb)
+    {
+    }
+
+    /**
+     * \brief Puts back a process that is done with its IO.
+     */
+    default void onWake(ProcessControlBlock pcb)
+    {
+        admit(pcb);
+    }
+
+    /**
+     * \brief Called when the running process has run all of its operations.
+     */
+    default void onExit(ProcessControlBlock pcb)
+    {
+    }
+
+    /**
+     * \brief Makes a new scheduler by its CPU scheduling code.
+     * \param name The CPU scheduling code, in any case.
+     * \return A scheduler of its own, which has not been set up yet.
+     * \throws SimulationException If no scheduler has that name.
+     */
+    static Scheduler forName(String name)
+    {
+        for (Scheduler scheduler : ServiceLoader.load(Scheduler.class, Scheduler.class.getClassLoader()))
+        {
+            if (scheduler.getName().equalsIgnoreCase(name))
+                return scheduler;
+        }
+
+        throw new SimulationException("Schedule type is not a valid option\n" +
+                                      "Exiting with return code 1");
+    }
+}
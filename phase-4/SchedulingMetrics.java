@@ -0,0 +1,641 @@
+/**
+ * Scheduling metrics for a simulation.
+ * Every process records when it changes state, and once it terminates
+ * its turnaround, waiting, response, running and blocked times are kept
+ * here. Waiting time is the time spent ready to run but not running,
+ * including before the first dispatch, and response time is the time
+ * until the first dispatch. All of them are measured from the start of
+ * the simulation, since every process is loaded before it starts.
+ * Each wait on an IO operation and the time every device is busy are
+ * recorded as well.
+ *
+ * At the end of the simulation the throughput, utilization and latency
+ * percentiles are logged, and a JSON or CSV report can be written with
+ * the same numbers along with every process's times. The histograms
+ * only estimate percentiles, so when a report is asked for, and every
+ * process's times are kept anyway, the percentiles of those times are
+ * worked out exactly from them instead.
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class SchedulingMetrics
+{
+    private static final double[] PERCENTILES = { 50, 90, 99 };
+    private static final Device[] REPORTED_DEVICES = { Device.PROCESSOR, Device.HARD_DRIVE,
+                                                       Device.PROJECTOR, Device.KEYBOARD,
+                                                       Device.MONITOR, Device.SCANNER,
+                                                       Device.ALLOCATE, Device.BLOCK };
+
+    private final SimulationContext context;
+    private final List<long[]> processes;
+    private long numFinished;
+    private final LatencyHistogram turnaround,
+                                   waiting,
+                                   response,
+                                   ioLatency;
+    private final AtomicLongArray deviceBusy,
+                                  deviceOperations;
+    private final long[] levelNanos,
+                         levelDispatches;
+    private long numDemotions,
+                 numPromotions;
+    private volatile long startTime;
+
+    /**
+     * \brief Indices into the times kept for each process.
+     */
+    private static final int PROCESS_ID = 0,
+                             CORE_ID = 1,
+                             NUM_OPERATIONS = 2,
+                             NUM_IO = 3,
+                             TURNAROUND = 4,
+                             WAITING = 5,
+                             RESPONSE = 6,
+                             RUNNING = 7,
+                             BLOCKED = 8,
+                             NUM_FIELDS = 9;
+
+    /**
+     * \brief SchedulingMetrics constructor.
+     * \param context The simulation the metrics are for.
+     */
+    SchedulingMetrics(SimulationContext context)
+    {
+        this.context = context;
+        this.processes = new ArrayList<long[]>();
+        this.numFinished = 0;
+        this.turnaround = new LatencyHistogram();
+        this.waiting = new LatencyHistogram();
+        this.response = new LatencyHistogram();
+        this.ioLatency = new LatencyHistogram();
+        this.deviceBusy = new AtomicLongArray(Device.values().length);
+        this.deviceOperations = new AtomicLongArray(Device.values().length);
+        this.levelNanos = new long[Math.max(1, context.config.feedbackLevels)];
+        this.levelDispatches = new long[levelNanos.length];
+        this.numDemotions = 0;
+        this.numPromotions = 0;
+        this.startTime = 0;
+    }
+
+    /**
+     * \brief Marks the start of the simulation, which every time is measured from.
+     */
+    public void start(long startTime)
+    {
+        this.startTime = startTime;
+    }
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * \brief Records the time a device spent on an operation.
+     * \details Called from whichever thread ran the operation.
+     */
+    public void recordOperation(Device device, long nanos)
+    {
+        deviceBusy.addAndGet(device.ordinal(), nanos);
+        deviceOperations.incrementAndGet(device.ordinal());
+    }
+
+    /**
+     * \brief Gives the time every operation took, added up (ns).
+     * \details This is how long the workload takes run one operation at
+     *          a time on a single core, with no IO overlapping it.
+     */
+    public long getSerialTime()
+    {
+        long total = 0;
+        for (int i = 0; i < deviceBusy.length(); i++)
+            total += deviceBusy.get(i);
+        return total;
+    }
+
+    /**
+     * \brief Records how long a process waited on one IO operation.
+     */
+    public synchronized void recordIOLatency(long nanos)
+    {
+        ioLatency.record(nanos);
+    }
+
+    /**
+     * \brief Records time processes spent on a level of the multilevel feedback queue.
+     */
+    public synchronized void recordLevelResidency(int level, long nanos)
+    {
+        levelNanos[level] += nanos;
+    }
+
+    /**
+     * \brief Counts a dispatch of a process on a level of the multilevel feedback queue.
+     */
+    public synchronized void recordLevelDispatch(int level)
+    {
+        levelDispatches[level]++;
+    }
+
+    /**
+     * \brief Counts a process dropping a level for using up its quantum.
+     */
+    public synchronized void recordDemotion()
+    {
+        numDemotions++;
+    }
+
+    /**
+     * \brief Counts a process rising a level for blocking on IO.
+     */
+    public synchronized void recordPromotion()
+    {
+        numPromotions++;
+    }
+
+    /**
+     * \brief Records the times of a process that has terminated.
+     * \details The times of each process are only kept if they will be
+     *          written to a report, so a workload that is streamed in
+     *          is not held in memory here either.
+     */
+    public synchronized void processFinished(ProcessControlBlock pcb)
+    {
+        long[] times = new long[NUM_FIELDS];
+        times[PROCESS_ID] = pcb.getProcessID();
+        times[CORE_ID] = pcb.getCore() == null ? 0 : pcb.getCore().getCoreID();
+        times[NUM_OPERATIONS] = pcb.getNumOperations();
+        times[NUM_IO] = pcb.getNumIO();
+        times[TURNAROUND] = pcb.getFinishTime() - startTime;
+        times[WAITING] = pcb.getStateNanos(State.NEW) + pcb.getStateNanos(State.READY);
+        times[RESPONSE] = pcb.getFirstRunTime() - startTime;
+        times[RUNNING] = pcb.getStateNanos(State.RUNNING);
+        times[BLOCKED] = pcb.getStateNanos(State.WAITING);
+        numFinished++;
+        if (context.config.metricsReport != MetricsReport.NONE)
+            processes.add(times);
+
+        turnaround.record(times[TURNAROUND]);
+        waiting.record(times[WAITING]);
+        response.record(times[RESPONSE]);
+    }
+
+    /**
+     * \brief Gives the number of processes that finished per second.
+     * \param makespan Length of the simulation (ns).
+     */
+    public synchronized double getThroughput(long makespan)
+    {
+        return makespan == 0 ? 0.0 : numFinished / (makespan / 1000000000.0);
+    }
+
+    /**
+     * \brief Getters for the latency histograms.
+     */
+    public LatencyHistogram getTurnaround()
+    {
+        return turnaround;
+    }
+
+    public LatencyHistogram getWaiting()
+    {
+        return waiting;
+    }
+
+    public LatencyHistogram getResponse()
+    {
+        return response;
+    }
+
+    public LatencyHistogram getIOLatency()
+    {
+        return ioLatency;
+    }
+
+    /**
+     * \brief Describes the throughput and how busy the shared devices were.
+     * \param makespan Length of the simulation (ns).
+     */
+    public synchronized String getReport(long makespan)
+    {
+        return "throughput " + String.format("%.4f", getThroughput(makespan)) +
+               " processes/sec, projector utilization " +
+               formatPercent(getUtilization(Device.PROJECTOR, makespan)) +
+               "%, hard drive utilization " +
+               formatPercent(getUtilization(Device.HARD_DRIVE, makespan)) + "%";
+    }
+
+    /**
+     * \brief Describes the time processes spent on a level of the multilevel feedback queue.
+     * \details The residency is the level's share of the time every
+     *          process spent on any level, from the start until it
+     *          finished.
+     */
+    public synchronized String getLevelReport(int level)
+    {
+        return "MLFQ level " + (level + 1) + ", quantum " +
+               context.config.getLevelQuantum(level) + " cycles: residency " +
+               formatPercent(getLevelShare(level)) + "% (" + formatSeconds(levelNanos[level]) +
+               " sec), " + levelDispatches[level] + " dispatches";
+    }
+
+    /**
+     * \brief Describes how often processes moved between levels.
+     * \param makespan Length of the simulation (ns).
+     */
+    public synchronized String getFeedbackReport(long makespan)
+    {
+        return "MLFQ " + numDemotions + " demotions, " + numPromotions + " promotions, " +
+               getNumBoosts(makespan) + " priority boosts";
+    }
+
+    /**
+     * \brief Checks if any process was dispatched from a feedback level.
+     * \details Only the multilevel feedback queue scheduler records
+     *          levels, so this says whether there is anything to report.
+     */
+    public synchronized boolean hasFeedbackLevels()
+    {
+        for (long numDispatches : levelDispatches)
+        {
+            if (numDispatches > 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * \brief Gives a level's share of the time processes spent on every level.
+     */
+    private double getLevelShare(int level)
+    {
+        long total = 0;
+        for (long nanos : levelNanos)
+            total += nanos;
+        return total == 0 ? 0.0 : 100.0 * levelNanos[level] / total;
+    }
+
+    /**
+     * \brief Gives how many boosts happened during the simulation.
+     */
+    private long getNumBoosts(long makespan)
+    {
+        long interval = context.config.boostInterval * 1000000L;
+        return interval <= 0 || levelNanos.length == 1 ? 0 : makespan / interval;
+    }
+
+    /**
+     * \brief Describes the percentiles of one of the histograms.
+     * \details The percentiles are exact if the times are kept, and
+     *          estimated from the histogram otherwise.
+     * \param name What the histogram measures.
+     */
+    public synchronized String getLatencyReport(String name, LatencyHistogram histogram)
+    {
+        long[] sorted = getSortedTimes(histogram);
+        StringBuilder report = new StringBuilder(name);
+        report.append(" avg ").append(formatSeconds(histogram.getMean()));
+        for (double percentile : PERCENTILES)
+            report.append(", p").append((int)percentile).append(' ')
+                  .append(formatSeconds(getPercentile(histogram, sorted, percentile)));
+        report.append(", max ").append(formatSeconds(histogram.getMax()));
+        report.append(" (sec) over ").append(histogram.getCount());
+        if (sorted == null)
+            report.append(", percentiles estimated");
+        return report.toString();
+    }
+
+    /**
+     * \brief Gives every process's time that a histogram was recorded from, in order.
+     * \return The times, or null if they are not kept, or the histogram
+     *         is not of a process's times.
+     */
+    private long[] getSortedTimes(LatencyHistogram histogram)
+    {
+        int field = histogram == turnaround ? TURNAROUND :
+                    histogram == waiting ? WAITING :
+                    histogram == response ? RESPONSE : -1;
+        if (field < 0 || context.config.metricsReport == MetricsReport.NONE)
+            return null;
+
+        return getSortedTimes(field);
+    }
+
+    /**
+     * \brief Gives one of the times of every process, in order.
+     */
+    private long[] getSortedTimes(int field)
+    {
+        long[] sorted = new long[processes.size()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = processes.get(i)[field];
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * \brief Gives a percentile, exactly if the times are given.
+     * \details The exact percentile is the recorded time at the same
+     *          rank the histogram uses, so it is always a measured time.
+     * \param sorted The recorded times in order, or null to estimate
+     *        the percentile from the histogram.
+     */
+    private static long getPercentile(LatencyHistogram histogram, long[] sorted,
+                                      double percentile)
+    {
+        if (sorted == null)
+            return histogram.getPercentile(percentile);
+        if (sorted.length == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * sorted.length));
+        return sorted[(int)Math.min(rank, sorted.length) - 1];
+    }
+
+    /**
+     * \brief Writes the report the configuration asks for, if any.
+     * \param makespan Length of the simulation (ns).
+     */
+    public void writeReport(long makespan)
+    {
+        MetricsReport type = context.config.metricsReport;
+        if (type == MetricsReport.NONE)
+            return;
+
+        String filePath = context.config.metricsFilePath;
+        if (type == MetricsReport.JSON)
+            writeFile(filePath, toJson(makespan));
+        else
+        {
+            writeFile(filePath, toCsv());
+            writeFile(getSummaryFilePath(filePath), toCsvSummary());
+        }
+    }
+
+    /**
+     * \brief Gives where the summary of a CSV report is written.
+     * \details "-summary" is added before the extension of the report's
+     *          file name, or at the end if it has none.
+     */
+    static String getSummaryFilePath(String filePath)
+    {
+        int dot = filePath.lastIndexOf('.');
+        int separator = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
+        if (dot <= separator + 1)
+            return filePath + "-summary";
+
+        return filePath.substring(0, dot) + "-summary" + filePath.substring(dot);
+    }
+
+    /**
+     * \brief Writes one of the report's files.
+     */
+    private void writeFile(String filePath, String contents)
+    {
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(filePath));
+            writer.write(contents);
+            writer.close();
+        } catch (IOException e) {
+            context.logger.logError("Metrics report could not be written to " + filePath);
+        }
+    }
+
+    /**
+     * \brief Gives the share of a device's capacity that was in use.
+     * \details Processor cycles are shared by the cores, and only
+     *          projectors and hard drives have a set number of devices.
+     *          Every other device is treated as having one.
+     */
+    private double getUtilization(Device device, long makespan)
+    {
+        int quantity = 1;
+        if (device == Device.PROCESSOR)
+            quantity = context.config.processorCores;
+        else if (device == Device.PROJECTOR)
+            quantity = context.config.projectorQuantity;
+        else if (device == Device.HARD_DRIVE)
+            quantity = context.config.hardDriveQuantity;
+
+        return makespan == 0 || quantity == 0 ? 0.0 :
+               100.0 * deviceBusy.get(device.ordinal()) / ((double)makespan * quantity);
+    }
+
+    /**
+     * \brief Builds the JSON report.
+     */
+    private synchronized String toJson(long makespan)
+    {
+        StringBuilder json = new StringBuilder(256 + processes.size() * 160);
+        long cpuTime = 0;
+        int numCores = 1;
+        OperatingSystem os = context.getOperatingSystem();
+        if (os != null)
+        {
+            cpuTime = os.getCpuTime();
+            numCores = os.getNumCores();
+        }
+
+        json.append("{\n  \"system\": {\n");
+        json.append("    \"processes\": ").append(numFinished).append(",\n");
+        json.append("    \"cores\": ").append(numCores).append(",\n");
+        json.append("    \"makespan\": ").append(formatSeconds(makespan)).append(",\n");
+        json.append("    \"cpuTime\": ").append(formatSeconds(cpuTime)).append(",\n");
+        json.append("    \"cpuUtilization\": ")
+            .append(formatPercent(makespan == 0 ? 0.0 : 100.0 * cpuTime / makespan / numCores))
+            .append(",\n");
+        json.append("    \"serialTime\": ").append(formatSeconds(getSerialTime())).append(",\n");
+        json.append("    \"speedup\": ")
+            .append(String.format("%.2f", makespan == 0 ? 0.0 : (double)getSerialTime() / makespan))
+            .append(",\n");
+        json.append("    \"throughput\": ").append(String.format("%.4f", getThroughput(makespan)))
+            .append("\n  },\n");
+
+        json.append("  \"devices\": [");
+        boolean isFirst = true;
+        for (Device device : REPORTED_DEVICES)
+        {
+            long numOperations = deviceOperations.get(device.ordinal());
+            if (numOperations == 0)
+                continue;
+
+            json.append(isFirst ? "\n" : ",\n");
+            isFirst = false;
+            json.append("    { \"device\": \"").append(device.label)
+                .append("\", \"operations\": ").append(numOperations)
+                .append(", \"busy\": ").append(formatSeconds(deviceBusy.get(device.ordinal())))
+                .append(", \"utilization\": ").append(formatPercent(getUtilization(device, makespan)))
+                .append(" }");
+        }
+        json.append("\n  ],\n");
+
+        json.append("  \"latencies\": {\n");
+        appendHistogram(json, "turnaround", turnaround, getSortedTimes(turnaround), false);
+        appendHistogram(json, "waiting", waiting, getSortedTimes(waiting), false);
+        appendHistogram(json, "response", response, getSortedTimes(response), false);
+        appendHistogram(json, "io", ioLatency, null, true);
+        json.append("  },\n");
+
+        if (hasFeedbackLevels())
+        {
+            json.append("  \"feedback\": {\n");
+            json.append("    \"demotions\": ").append(numDemotions).append(",\n");
+            json.append("    \"promotions\": ").append(numPromotions).append(",\n");
+            json.append("    \"boosts\": ").append(getNumBoosts(makespan)).append(",\n");
+            json.append("    \"levels\": [");
+            for (int i = 0; i < levelNanos.length; i++)
+            {
+                json.append(i == 0 ? "\n" : ",\n");
+                json.append("      { \"level\": ").append(i + 1)
+                    .append(", \"quantum\": ").append(context.config.getLevelQuantum(i))
+                    .append(", \"residency\": ").append(formatSeconds(levelNanos[i]))
+                    .append(", \"share\": ").append(formatPercent(getLevelShare(i)))
+                    .append(", \"dispatches\": ").append(levelDispatches[i])
+                    .append(" }");
+            }
+            json.append("\n    ]\n  },\n");
+        }
+
+        json.append("  \"processes\": [");
+        for (int i = 0; i < processes.size(); i++)
+        {
+            long[] times = processes.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    { \"id\": ").append(times[PROCESS_ID])
+                .append(", \"core\": ").append(times[CORE_ID])
+                .append(", \"operations\": ").append(times[NUM_OPERATIONS])
+                .append(", \"io\": ").append(times[NUM_IO])
+                .append(", \"turnaround\": ").append(formatSeconds(times[TURNAROUND]))
+                .append(", \"waiting\": ").append(formatSeconds(times[WAITING]))
+                .append(", \"response\": ").append(formatSeconds(times[RESPONSE]))
+                .append(", \"running\": ").append(formatSeconds(times[RUNNING]))
+                .append(", \"blocked\": ").append(formatSeconds(times[BLOCKED]))
+                .append(" }");
+        }
+        json.append("\n  ]\n}\n");
+
+        return json.toString();
+    }
+
+    /**
+     * \brief Adds a histogram's summary and its used buckets to the JSON report.
+     * \details Each bucket is its lower bound in seconds and its count.
+     *          "estimated" says if the percentiles come from the buckets.
+     * \param sorted The recorded times in order, or null if they are not kept.
+     */
+    private static void appendHistogram(StringBuilder json, String name, LatencyHistogram histogram,
+                                        long[] sorted, boolean isLast)
+    {
+        json.append("    \"").append(name).append("\": { \"count\": ").append(histogram.getCount())
+            .append(", \"mean\": ").append(formatSeconds(histogram.getMean()))
+            .append(", \"min\": ").append(formatSeconds(histogram.getMin()))
+            .append(", \"estimated\": ").append(sorted == null);
+        for (double percentile : PERCENTILES)
+            json.append(", \"p").append((int)percentile).append("\": ")
+                .append(formatSeconds(getPercentile(histogram, sorted, percentile)));
+        json.append(", \"max\": ").append(formatSeconds(histogram.getMax()));
+
+        json.append(", \"buckets\": [");
+        boolean isFirst = true;
+        for (int i = 0; i < histogram.getNumBuckets(); i++)
+        {
+            long bucketCount = histogram.getBucketCount(i);
+            if (bucketCount == 0)
+                continue;
+
+            json.append(isFirst ? "" : ", ");
+            isFirst = false;
+            json.append('[').append(formatSeconds(histogram.lowerBound(i))).append(", ")
+                .append(bucketCount).append(']');
+        }
+        json.append("] }").append(isLast ? "\n" : ",\n");
+    }
+
+    /**
+     * \brief Builds the CSV report.
+     * \details There is a row per process in the order they finished.
+     *          The summary goes in a file of its own, so this one is a
+     *          single table.
+     */
+    private synchronized String toCsv()
+    {
+        StringBuilder csv = new StringBuilder(128 + processes.size() * 80);
+        csv.append("process,core,operations,io,turnaround (sec),waiting (sec),response (sec)," +
+                   "running (sec),blocked (sec)\n");
+
+        for (long[] times : processes)
+        {
+            csv.append(times[PROCESS_ID]).append(',').append(times[CORE_ID]).append(',')
+               .append(times[NUM_OPERATIONS]).append(',').append(times[NUM_IO]);
+            for (int field = TURNAROUND; field < NUM_FIELDS; field++)
+                csv.append(',').append(formatSeconds(times[field]));
+            csv.append('\n');
+        }
+
+        return csv.toString();
+    }
+
+    /**
+     * \brief Builds the summary of the CSV report.
+     * \details There is a row with the mean, each percentile and the
+     *          maximum, and a column for each of the times in the report.
+     *          The percentiles are worked out exactly from every process's
+     *          times, and are always one of them.
+     */
+    private synchronized String toCsvSummary()
+    {
+        long[][] sorted = new long[NUM_FIELDS][];
+        for (int field = TURNAROUND; field < NUM_FIELDS; field++)
+            sorted[field] = getSortedTimes(field);
+
+        StringBuilder csv = new StringBuilder(512);
+        csv.append("statistic,turnaround (sec),waiting (sec),response (sec)," +
+                   "running (sec),blocked (sec)\n");
+
+        csv.append("mean");
+        for (int field = TURNAROUND; field < NUM_FIELDS; field++)
+        {
+            long total = 0;
+            for (long time : sorted[field])
+                total += time;
+            csv.append(',').append(formatSeconds(sorted[field].length == 0 ? 0.0 :
+                                                 (double)total / sorted[field].length));
+        }
+        csv.append('\n');
+
+        for (double percentile : PERCENTILES)
+            appendSummaryRow(csv, "p" + (int)percentile, sorted, percentile);
+        appendSummaryRow(csv, "max", sorted, 100);
+
+        return csv.toString();
+    }
+
+    /**
+     * \brief Adds a row with one percentile of every time to the summary.
+     */
+    private static void appendSummaryRow(StringBuilder csv, String label, long[][] sorted,
+                                         double percentile)
+    {
+        csv.append(label);
+        for (int field = TURNAROUND; field < NUM_FIELDS; field++)
+            csv.append(',').append(formatSeconds(getPercentile(null, sorted[field], percentile)));
+        csv.append('\n');
+    }
+
+    private static String formatSeconds(double nanos)
+    {
+        return String.format("%.6f", nanos / 1000000000.0);
+    }
+
+    private static String formatPercent(double percent)
+    {
+        return String.format("%.1f", percent);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Shortest job first scheduling.
+ * The ready process with the fewest operations runs next, until it
+ * blocks on IO or finishes.
+ * Processes with the same priority run in the order they became ready.
+ */
+
+import java.util.function.ToLongFunction;
+
+public class ShortestJobScheduler implements Scheduler
+{
+    private final ReadyHeap readyQueue;
+
+    public ShortestJobScheduler()
+    {
+        readyQueue = new ReadyHeap(new ToLongFunction<ProcessControlBlock>()
+        {
+            public long applyAsLong(ProcessControlBlock pcb)
+            {
+                return pcb.getNumOperations();
+            }
+        });
+    }
+
+    public String getName()
+    {
+        return "sjf";
+    }
+
+    public void init(SimulationContext context)
+    {
+    }
+
+    public void admit(ProcessControlBlock pcb)
+    {
+        readyQueue.add(pcb);
+    }
+
+    public ProcessControlBlock pickNext()
+    {
+        return readyQueue.poll();
+    }
+
+    public int size()
+    {
+        return readyQueue.size();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Shortest remaining time first scheduling.
+ * The ready process with the least service time left runs next, and
+ * the running process gives up the core as soon as a process with
+ * less time left than it is ready. This is checked after every
+ * operation, and every processor quantum during a long run operation
+ * if the quantum is not zero.
+ */
+
+import java.util.function.ToLongFunction;
+
+public class ShortestRemainingTimeScheduler implements Scheduler
+{
+    private final ReadyHeap readyHeap;
+    private int quantum;
+
+    public ShortestRemainingTimeScheduler()
+    {
+        readyHeap = new ReadyHeap(new ToLongFunction<ProcessControlBlock>()
+        {
+            public long applyAsLong(ProcessControlBlock pcb)
+            {
+                return remainingMicros(pcb);
+            }
+        });
+    }
+
+    public String getName()
+    {
+        return "srtf";
+    }
+
+    public void init(SimulationContext context)
+    {
+        quantum = context.config.processorQuantumNum;
+    }
+
+    public void admit(ProcessControlBlock pcb)
+    {
+        readyHeap.add(pcb);
+    }
+
+    public ProcessControlBlock pickNext()
+    {
+        return readyHeap.poll();
+    }
+
+    public int size()
+    {
+        return readyHeap.size();
+    }
+
+    public int getTimeSlice(ProcessControlBlock pcb)
+    {
+        return quantum;
+    }
+
+    public boolean checksEveryOperation()
+    {
+        return true;
+    }
+
+    /**
+     * \brief Preempts the process if a ready one has less service time left.
+     * \details Using up the time slice does not matter on its own.
+     */
+    public boolean shouldPreempt(ProcessControlBlock pcb, boolean isSliceUsed)
+    {
+        return readyHeap.peekKey() < remainingMicros(pcb);
+    }
+
+    /**
+     * \brief Gives the key of a process, its service time left in microseconds.
+     * \details Cycle times are whole milliseconds, so nothing is lost, and
+     *          the key fits in the bits the ready heap has for it for far
+     *          longer than in nanoseconds. A process with more than about
+     *          six days left is keyed as if it had MAX_KEY left, and such
+     *          processes run in the order they became ready.
+     */
+    private static long remainingMicros(ProcessControlBlock pcb)
+    {
+        return Math.min(pcb.getRemainingNanos() / 1000, ReadyHeap.MAX_KEY);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Clock module for the OS simulation.
+ * Every timestamp in the simulation is read from here. In real mode
+ * it simply forwards to the system timer. In virtual mode time only
+ * moves forward when the event queue fires an event, so a simulation
+ * runs as fast as the events can be processed while the timestamps
+ * stay the same as they would be in real time.
+ */
+
+class SimulationClock
+{
+    private final ClockMode mode;
+    private volatile long virtualTime;
+
+    /**
+     * \brief SimulationClock constructor.
+     * \details The virtual time starts at zero.
+     * \param mode Whether the clock runs on real or virtual time.
+     */
+    SimulationClock(ClockMode mode)
+    {
+        this.mode = mode;
+        this.virtualTime = 0;
+    }
+
+    /**
+     * \brief Gives the current time of the simulation (ns).
+     * \return System time in real mode, otherwise the virtual time.
+     */
+    public long nanoTime()
+    {
+        if (mode == ClockMode.VIRTUAL)
+            return virtualTime;
+        else
+            return System.nanoTime();
+    }
+
+    /**
+     * \brief Checks if the clock is running on virtual time.
+     */
+    public boolean isVirtual()
+    {
+        return mode == ClockMode.VIRTUAL;
+    }
+
+    /**
+     * \brief Moves the virtual time forward.
+     * \details Only the event queue should call this, since it is the
+     *          one that knows when the next event happens. Time never
+     *          goes backwards.
+     * \param time The new virtual time (ns).
+     */
+    void advanceTo(long time)
+    {
+        if (time > virtualTime)
+            virtualTime = time;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Everything one simulation needs to run.
+ * Holds the configuration, clock, logger, memory and devices of one
+ * simulation, and every other part of the simulation reaches them
+ * through the context it was created with. Any number of contexts can
+ * run at the same time, on any threads, without seeing each other.
+ *
+ * An error on any of a simulation's threads fails the whole simulation.
+ * Threads blocked inside it are woken up, and the error is thrown out of
+ * simulate() to whoever is running it.
+ */
+
+class SimulationContext
+{
+    public final Configuration config;
+    public final SimulationClock clock;
+    public final EventQueue events;
+    public final Logger logger;
+    public final Memory memory;
+    public final VirtualMemory virtualMemory;
+    public final ResourceManager resources;
+    public final IOExecutor io;
+    public final SchedulingMetrics metrics;
+    private volatile OperatingSystem os;
+    private volatile SimulationException failure;
+
+    /**
+     * \brief Creates a context from a configuration file.
+     * \param configFilePath The file path for the configuration file.
+     */
+    SimulationContext(String configFilePath)
+    {
+        this(new Configuration(configFilePath));
+    }
+
+    /**
+     * \brief Creates a context from a configuration.
+     * \details Every module is initialized in the order they depend on
+     *          each other. The configuration is only read, so several
+     *          contexts can share one.
+     */
+    SimulationContext(Configuration config)
+    {
+        this.config = config;
+        this.clock = new SimulationClock(config.clockMode);
+        this.events = new EventQueue(this);
+        this.logger = new Logger(this);
+        this.memory = new Memory(this);
+        this.virtualMemory = new VirtualMemory(this);
+        this.resources = new ResourceManager(this);
+        this.io = new IOExecutor(this);
+        this.metrics = new SchedulingMetrics(this);
+        this.os = null;
+        this.failure = null;
+    }
+
+    /**
+     * \brief Loads the meta data and runs the simulation to completion.
+     */
+    public void run()
+    {
+        new OperatingSystem(this).simulate();
+    }
+
+    /**
+     * \brief Called by the OS that runs in this context.
+     * \details Lets the context wake the OS's idle cores if it fails.
+     */
+    void setOperatingSystem(OperatingSystem os)
+    {
+        this.os = os;
+    }
+
+    /**
+     * \brief Getter for the OS that runs in this context, if any.
+     */
+    public OperatingSystem getOperatingSystem()
+    {
+        return os;
+    }
+
+    /**
+     * \brief Fails the simulation.
+     * \details Only the first error is kept. The IO threads are stopped
+     *          and every thread waiting on the simulation is woken, so
+     *          they can see it failed.
+     * \param error The error that ended the simulation.
+     */
+    void fail(SimulationException error)
+    {
+        synchronized (this)
+        {
+            if (failure != null)
+                return;
+            failure = error;
+        }
+
+        // Errors in the configuration happen before everything exists
+        if (io != null)
+            io.shutdownNow();
+        if (events != null)
+            events.wakeAll();
+        OperatingSystem current = os;
+        if (current != null)
+            current.wakeAll();
+    }
+
+    /**
+     * \brief Throws the error the simulation failed with, if it has.
+     * \details Called by threads before and after they block.
+     */
+    public void checkFailed()
+    {
+        SimulationException error = failure;
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * \brief Checks if the simulation has failed.
+     */
+    public boolean hasFailed()
+    {
+        return failure != null;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Error that ends a single simulation.
+ * It is thrown out of the simulation to whoever is running it. Only the
+ * command line driver exits, so other simulations in the same JVM keep
+ * running.
+ */
+
+class SimulationException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final boolean isLogged;
+
+    /**
+     * \brief SimulationException constructor.
+     * \param msg Description of the problem.
+     * \param isLogged True if the message has already been written to
+     *        the simulation's log, otherwise the driver prints it.
+     */
+    SimulationException(String msg, boolean isLogged)
+    {
+        super(msg);
+        this.isLogged = isLogged;
+    }
+
+    /**
+     * \brief Creates an error that has not been logged anywhere.
+     */
+    SimulationException(String msg)
+    {
+        this(msg, false);
+    }
+
+    /**
+     * \brief Checks if the message is already in the simulation's log.
+     */
+    public boolean isLogged()
+    {
+        return isLogged;
+    }
+}
@@ -10,19 +10,24 @@
  * for logging timestamps. I don't necessarily agree, because the
  * underlying prescalar used for the system timer with nanoTime() is
  * not for precise.
+ * Time is read from the simulation clock, so the same timer
+ * works whether the simulation is running in real or virtual time.
  */
 
 class Timer
 {
+    private final SimulationClock clock;
     private long startTime;
     private long stopTime;
     private boolean isRunning;
 
     /**
      * \brief Timer constructor.
+     * \param clock The clock of the simulation the timer is used in.
      */
-    Timer()
+    Timer(SimulationClock clock)
     {
+        this.clock = clock;
         startTime = 0;
         stopTime = 0;
         isRunning = false;
@@ -34,7 +39,7 @@ class Timer
     public void start()
     {
         isRunning = true;
-        startTime = System.nanoTime();
+        startTime = clock.nanoTime();
     }
 
     /**
@@ -45,7 +50,7 @@ class Timer
         if (isRunning)
         {
             isRunning = false;
-            stopTime = System.nanoTime();
+            stopTime = clock.nanoTime();
         }
     }
 
@@ -59,8 +64,20 @@ class Timer
     public double getElapsedTime()
     {
         if (isRunning)
-            return (double)(System.nanoTime() - startTime) / 1000000000.0;
+            return (double)(clock.nanoTime() - startTime) / 1000000000.0;
         else
             return (double)(stopTime - startTime) / 1000000000.0;
     }
-}
\ No newline at end of file
+
+    /**
+     * \brief Gives the amount of time elapsed since started (ns).
+     * \details Same as getElapsedTime(), without the conversion to seconds.
+     */
+    public long getElapsedNanos()
+    {
+        if (isRunning)
+            return clock.nanoTime() - startTime;
+        else
+            return stopTime - startTime;
+    }
+}
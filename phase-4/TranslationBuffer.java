@@ -0,0 +1,107 @@
+/**
+ * Simulated translation lookaside buffer.
+ * A small fully associative cache of page to frame translations. Each
+ * entry is tagged with the process ID, so it does not have to be
+ * flushed on a context switch. When it is full, the least recently
+ * used entry is replaced. Lookups scan every entry, which is cheap at
+ * the sizes a real TLB has.
+ */
+
+import java.util.Arrays;
+
+class TranslationBuffer
+{
+    private static final long EMPTY = -1;
+
+    private final long[] keys;
+    private final int[] frames;
+    private final long[] lastUsed;
+    private long useCounter;
+
+    /**
+     * \brief TranslationBuffer constructor.
+     * \param numEntries Number of translations the buffer holds.
+     */
+    TranslationBuffer(int numEntries)
+    {
+        keys = new long[numEntries];
+        frames = new int[numEntries];
+        lastUsed = new long[numEntries];
+        Arrays.fill(keys, EMPTY);
+        useCounter = 0;
+    }
+
+    /**
+     * \brief Looks up the frame a page is loaded in.
+     * \return The frame, or PageTable.NOT_RESIDENT on a miss.
+     */
+    public int lookup(int processID, int page)
+    {
+        long key = toKey(processID, page);
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] == key)
+            {
+                lastUsed[i] = ++useCounter;
+                return frames[i];
+            }
+        }
+
+        return PageTable.NOT_RESIDENT;
+    }
+
+    /**
+     * \brief Adds a translation, replacing the least recently used one.
+     */
+    public void insert(int processID, int page, int frame)
+    {
+        if (keys.length == 0)
+            return;
+
+        int victim = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] == EMPTY)
+            {
+                victim = i;
+                break;
+            }
+            if (lastUsed[i] < lastUsed[victim])
+                victim = i;
+        }
+
+        keys[victim] = toKey(processID, page);
+        frames[victim] = frame;
+        lastUsed[victim] = ++useCounter;
+    }
+
+    /**
+     * \brief Drops the translation for a page that was evicted.
+     */
+    public void invalidate(int processID, int page)
+    {
+        long key = toKey(processID, page);
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] == key)
+                keys[i] = EMPTY;
+        }
+    }
+
+    /**
+     * \brief Drops every translation of a process that has terminated.
+     */
+    public void flush(int processID)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != EMPTY && (int)(keys[i] >>> 32) == processID)
+                keys[i] = EMPTY;
+        }
+    }
+
+    private static long toKey(int processID, int page)
+    {
+        return ((long)processID << 32) | (page & 0xffffffffL);
+    }
+}
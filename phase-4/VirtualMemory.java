@@ -0,0 +1,228 @@
+/**
+ * Paged virtual memory module of the OS simulation.
+ * When a page replacement policy is set in the configuration file,
+ * every process gets its own page table. Allocating memory adds a page
+ * to the process's address space and loads it into a physical frame,
+ * where frames are blocks handed out by the Memory module. There are
+ * only so many frames, so once they are all in use a page has to be
+ * evicted by the replacement policy to make room.
+ *
+ * Each cycle of a block memory operation is one reference to one of the
+ * process's pages. A reference that hits the TLB costs one memory cycle,
+ * and a miss costs a second cycle for the page table walk. A reference
+ * to a page that has been evicted is a page fault. The operation stops
+ * there, and the process blocks on a hard drive read of the page like on
+ * any other hard drive operation, waiting for a drive and giving up its
+ * core. The page is loaded once the read completes, and the rest of the
+ * operation runs when the process is dispatched again.
+ */
+
+class VirtualMemory
+{
+    private final SimulationContext context;
+    private final ReplacementType replacementType;
+    private PageReplacement policy;
+    private TranslationBuffer tlb;
+    private PageTable[] frameTables;
+    private int[] framePages;
+    private long[] frameAddresses;
+    private int[] freeFrames;
+    private int numFreeFrames;
+    private long numReferences,
+                 numUnmappedReferences,
+                 numTlbHits,
+                 numPageFaults,
+                 numEvictions;
+
+    /**
+     * \brief VirtualMemory constructor.
+     * \details This depends upon the context's configuration and
+     *          memory being created first.
+     * \param context The simulation the virtual memory belongs to.
+     */
+    VirtualMemory(SimulationContext context)
+    {
+        this.context = context;
+        replacementType = context.config.pageReplacement;
+        numReferences = 0;
+        numUnmappedReferences = 0;
+        numTlbHits = 0;
+        numPageFaults = 0;
+        numEvictions = 0;
+
+        if (!isEnabled())
+            return;
+
+        int numFrames = (int)Math.min(context.config.pageFrames, context.memory.getNumBlocks());
+        if (numFrames < 1)
+            context.logger.logError("Not enough memory for a single page frame");
+
+        policy = PageReplacement.create(replacementType, numFrames);
+        tlb = new TranslationBuffer(context.config.tlbEntries);
+        frameTables = new PageTable[numFrames];
+        framePages = new int[numFrames];
+        frameAddresses = new long[numFrames];
+        freeFrames = new int[numFrames];
+        numFreeFrames = numFrames;
+        for (int i = 0; i < numFrames; i++)
+            freeFrames[i] = numFrames - 1 - i;
+    }
+
+    /**
+     * \brief Checks if memory is paged.
+     */
+    public boolean isEnabled()
+    {
+        return replacementType != ReplacementType.NONE;
+    }
+
+    /**
+     * \brief Adds a page to a process's address space and loads it.
+     * \details The page is new, so there is nothing to read from disk.
+     * \return The virtual address of the page.
+     */
+    public synchronized long allocatePage(PageTable table)
+    {
+        int frame = takeFrame(table.getProcessID());
+        int page = table.addPage(frame);
+        mapFrame(frame, table, page);
+        return (long)page * context.config.memoryBlockSize;
+    }
+
+    /**
+     * \brief Makes one page reference for a process.
+     * \details A process that has not allocated any memory has no page to
+     *          reference, so the reference only costs its memory cycle. A
+     *          reference to a page that is not loaded leaves the page as
+     *          the table's page fault, to be loaded with loadPage() once
+     *          the process has read it in from the hard drive.
+     * \return How long the reference takes (ns), apart from reading in
+     *         a faulted page.
+     */
+    public synchronized long reference(PageTable table)
+    {
+        long memoryNanos = context.config.getCycleTime(Device.BLOCK) * 1000000L;
+
+        numReferences++;
+        int page = table.nextReference();
+        if (page == PageTable.NOT_RESIDENT)
+        {
+            numUnmappedReferences++;
+            return memoryNanos;
+        }
+
+        int frame = tlb.lookup(table.getProcessID(), page);
+        if (frame != PageTable.NOT_RESIDENT)
+        {
+            numTlbHits++;
+            policy.referenced(frame);
+            return memoryNanos;
+        }
+
+        frame = table.getFrame(page);
+        if (frame == PageTable.NOT_RESIDENT)
+        {
+            numPageFaults++;
+            table.setFaultPage(page);
+        }
+        else
+        {
+            tlb.insert(table.getProcessID(), page, frame);
+            policy.referenced(frame);
+        }
+
+        return 2 * memoryNanos;
+    }
+
+    /**
+     * \brief Loads the page a process faulted on, now it has been read in.
+     * \details Evicts a page if no frame is free.
+     * \return The address of the frame the page is loaded in.
+     */
+    public synchronized long loadPage(PageTable table)
+    {
+        int page = table.getFaultPage();
+        int frame = takeFrame(table.getProcessID());
+        table.setFrame(page, frame);
+        table.setFaultPage(PageTable.NOT_RESIDENT);
+        mapFrame(frame, table, page);
+        tlb.insert(table.getProcessID(), page, frame);
+        policy.referenced(frame);
+        return frameAddresses[frame];
+    }
+
+    /**
+     * \brief Frees every frame a terminated process was using.
+     */
+    public synchronized void release(PageTable table)
+    {
+        for (int page = 0; page < table.getNumPages(); page++)
+        {
+            int frame = table.getFrame(page);
+            if (frame == PageTable.NOT_RESIDENT)
+                continue;
+
+            policy.freed(frame);
+            unmapFrame(frame);
+            freeFrames[numFreeFrames++] = frame;
+        }
+
+        tlb.flush(table.getProcessID());
+    }
+
+    /**
+     * \brief Describes how paging went over the simulation.
+     */
+    public synchronized String getReport()
+    {
+        long numMapped = numReferences - numUnmappedReferences;
+        double hitRate = numMapped == 0 ? 0.0 : 100.0 * numTlbHits / numMapped;
+
+        return "paging " + replacementType.toString() + " with " + frameTables.length +
+               " frames, " + numReferences + " references, " + numUnmappedReferences +
+               " with no pages, TLB hit rate " +
+               String.format("%.1f", hitRate) + "%, " + numPageFaults + " page faults, " +
+               numEvictions + " evictions";
+    }
+
+    /**
+     * \brief Finds a frame for a page, evicting one if none are free.
+     */
+    private int takeFrame(int processID)
+    {
+        int frame;
+        if (numFreeFrames > 0)
+            frame = freeFrames[--numFreeFrames];
+        else
+        {
+            frame = policy.selectVictim();
+            PageTable victim = frameTables[frame];
+            victim.setFrame(framePages[frame], PageTable.NOT_RESIDENT);
+            tlb.invalidate(victim.getProcessID(), framePages[frame]);
+            unmapFrame(frame);
+            numEvictions++;
+        }
+
+        frameAddresses[frame] = context.memory.allocate(processID);
+        return frame;
+    }
+
+    /**
+     * \brief Records which page a frame holds.
+     */
+    private void mapFrame(int frame, PageTable table, int page)
+    {
+        frameTables[frame] = table;
+        framePages[frame] = page;
+        policy.loaded(frame);
+    }
+
+    /**
+     * \brief Gives a frame's memory block back once its page is gone.
+     */
+    private void unmapFrame(int frame)
+    {
+        context.memory.free(frameTables[frame].getProcessID(), frameAddresses[frame]);
+        frameTables[frame] = null;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Compiles a meta data file into a compiled workload.
+ * The meta data is checked against the same rules the simulation loads
+ * it with, so a workload that compiles will load. The compiled file can
+ * be given as the meta data file path in any configuration, and the
+ * simulation loads it without parsing anything. See CompiledWorkload for
+ * the format.
+ *
+ * Usage: java WorkloadCompiler <meta data file> <output file>
+ */
+
+import java.io.IOException;
+
+class WorkloadCompiler
+{
+    private static final int REQUIRED_ARGS = 2;
+
+    public static void main(String[] args)
+    {
+        if (args.length != REQUIRED_ARGS)
+        {
+            System.err.println("Must supply a meta data file and an output file");
+            System.exit(1);
+        }
+
+        Configuration config = new Configuration();
+        config.mdfPath = args[0];
+
+        try {
+            long start = System.nanoTime();
+            CompiledWorkload.Builder workload = compile(new SimulationContext(config), args[0], args[1]);
+            System.out.printf("Compiled %d processes and %d operations into %s in %.3f sec%n",
+                              workload.getNumProcesses(), workload.getNumOperations(), args[1],
+                              (System.nanoTime() - start) / 1000000000.0);
+        } catch (SimulationException e) {
+            if (!e.isLogged())
+                System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * \brief Compiles a meta data file.
+     * \param context Where errors in the meta data are logged.
+     * \param mdfPath The meta data file to read.
+     * \param outPath Where the compiled workload is written.
+     * \return The compiled workload, for its counts.
+     */
+    static CompiledWorkload.Builder compile(SimulationContext context, String mdfPath, String outPath)
+    {
+        MetaDataTokenizer tokenizer = new MetaDataTokenizer(context, mdfPath);
+        CompiledWorkload.Builder workload = new CompiledWorkload.Builder();
+        boolean foundSystemBegin = false,
+                foundSystemFinish = false;
+
+        while (tokenizer.next())
+        {
+            OperationType type = tokenizer.getType();
+            Device device = tokenizer.getDevice();
+            boolean isSystem = type == OperationType.SYSTEM && tokenizer.getNumCycles() == 0;
+
+            if (isSystem && device == Device.BEGIN)
+                foundSystemBegin = true;
+
+            else if (isSystem && device == Device.FINISH)
+            {
+                foundSystemFinish = true;
+                break;
+            }
+
+            else if (!foundSystemBegin)
+                tokenizer.error("Missing OS system start operation");
+
+            else if (type == OperationType.APP && device == Device.BEGIN)
+            {
+                if (workload.isInProcess())
+                    tokenizer.error("Application started before the last one finished");
+                workload.beginProcess();
+            }
+
+            else if (type == OperationType.APP && device == Device.FINISH)
+            {
+                if (!workload.isInProcess())
+                    tokenizer.error("Application finished before it started");
+                workload.endProcess();
+            }
+
+            else if (CompiledWorkload.isLoadable(type, device))
+            {
+                if (!workload.isInProcess())
+                    tokenizer.error("No application created for current operations");
+                workload.addOperation(type, device, tokenizer.getNumCycles());
+            }
+
+            else
+                tokenizer.error("Operation is not valid");
+        }
+
+        tokenizer.close();
+        if (!foundSystemFinish)
+            context.logger.logError("Missing OS system finish operation");
+
+        try {
+            workload.write(outPath);
+        } catch (IOException e) {
+            context.logger.logError("Unable to write compiled workload to " + outPath);
+        }
+
+        return workload;
+    }
+}
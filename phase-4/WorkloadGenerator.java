@@ -0,0 +1,551 @@
+/**
+ * Synthetic workload generator.
+ * Makes processes up as they are needed from a short specification, so
+ * a scheduler can be stress tested without writing a huge meta data
+ * file first:
+ *
+ *     Start Workload Generator File
+ *     Seed: 42
+ *     Processes: 100000
+ *     Operations per process: uniform 5-40
+ *     IO ratio: 0.3
+ *     Compute mix: P{run} 8, M{allocate} 1, M{block} 1
+ *     IO mix: I{hard drive} 2, I{keyboard} 1, O{monitor} 3, O{projector} 1
+ *     Compute cycles: exponential 8
+ *     IO cycles: uniform 1-20
+ *     Admission window: 64
+ *     End Workload Generator File
+ *
+ * Counts and cycles are a number, or drawn from a distribution, which is
+ * one of "uniform a-b", "exponential mean" or "normal mean deviation".
+ * The IO ratio is the chance that an operation is IO, and each mix gives
+ * the weight of every kind of operation in its group. Only the process
+ * and operation counts are required.
+ *
+ * The same seed always gives the same workload. It can be written out as
+ * a meta data file, or the specification can be given as the meta data
+ * file path in a configuration. The simulation then keeps only as many
+ * processes loaded as the admission window allows, and loads the next
+ * one each time one finishes, so a workload of any size runs in the
+ * memory the window takes.
+ *
+ * Usage: java WorkloadGenerator <specification file> [output file]
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+class WorkloadGenerator
+{
+    static final String START_PROMPT = "Start Workload Generator File";
+    private static final int OPERATIONS_PER_LINE = 6;
+
+    private long seed;
+    private Distribution processes,
+                         operationsPerProcess,
+                         computeCycles,
+                         ioCycles;
+    private double ioRatio;
+    private Mix computeMix,
+                ioMix;
+    private int admissionWindow;
+
+    /**
+     * \brief Reads a generator specification.
+     * \param specFilePath Path to the specification file.
+     */
+    WorkloadGenerator(String specFilePath)
+    {
+        seed = 1;
+        processes = null;
+        operationsPerProcess = null;
+        computeCycles = Distribution.parse("compute cycles", "uniform 1-10", 1);
+        ioCycles = Distribution.parse("IO cycles", "uniform 1-10", 1);
+        ioRatio = 0.2;
+        computeMix = Mix.parse("compute mix", "P{run}", false);
+        ioMix = Mix.parse("IO mix", "I{hard drive}, I{keyboard}, O{hard drive}, " +
+                                    "O{monitor}, O{projector}", true);
+        admissionWindow = 64;
+        readSpecFile(specFilePath);
+    }
+
+    /**
+     * \brief Checks if a file is a generator specification.
+     * \details Only the first line is looked at.
+     */
+    static boolean isSpecification(String filePath)
+    {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(filePath));
+            String line = reader.readLine();
+            reader.close();
+            return line != null && line.trim().equalsIgnoreCase(START_PROMPT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Must supply a workload generator file");
+            System.exit(1);
+        }
+
+        try {
+            WorkloadGenerator generator = new WorkloadGenerator(args[0]);
+            Writer output;
+            if (args.length > 1)
+                output = new BufferedWriter(new FileWriter(args[1]));
+            else
+                output = new BufferedWriter(new OutputStreamWriter(System.out));
+
+            long[] counts = generator.writeMetaData(output);
+            output.close();
+            System.err.println("Generated " + counts[0] + " processes and " + counts[1] +
+                               " operations from seed " + generator.seed);
+        } catch (SimulationException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Unable to write to " + (args.length > 1 ? args[1] : "output"));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * \brief Gives how many processes the simulation keeps loaded at once.
+     */
+    public int getAdmissionWindow()
+    {
+        return admissionWindow;
+    }
+
+    /**
+     * \brief Writes the workload as a meta data file.
+     * \details Each process is written as soon as it is made, so only
+     *          one is in memory at a time.
+     * \return The number of processes and operations written.
+     */
+    public long[] writeMetaData(Writer output) throws IOException
+    {
+        ProcessStream process = new ProcessStream(seed);
+        long numOperations = 0;
+
+        output.write("Start Program Meta-Data Code:\nS{begin}0;\n");
+        while (process.next())
+        {
+            output.write("A{begin}0;");
+            for (int i = 0; i < process.numOperations; i++)
+            {
+                byte code = process.codes[i];
+                output.write(i % OPERATIONS_PER_LINE == 0 ? '\n' : ' ');
+                output.write(OperationType.values()[(code & 0xFF) >> 4].letter);
+                output.write('{');
+                output.write(Device.values()[code & 0x0F].label);
+                output.write('}');
+                output.write(Integer.toString(process.cycles[i]));
+                output.write(';');
+            }
+            output.write("\nA{finish}0;\n");
+            numOperations += process.numOperations;
+        }
+        output.write("S{finish}0.\nEnd Program Meta-Data Code.\n");
+
+        return new long[] { process.numProcesses, numOperations };
+    }
+
+    /**
+     * \brief Gives the workload as processes that are made as they are taken.
+     * \details The processes are the same ones writeMetaData() writes,
+     *          with IDs in the same order.
+     * \param context The simulation the processes run in.
+     */
+    public Iterator<ProcessControlBlock> processes(final SimulationContext context)
+    {
+        final ProcessStream process = new ProcessStream(seed);
+
+        return new Iterator<ProcessControlBlock>()
+        {
+            private boolean isMade = process.next();
+
+            public boolean hasNext()
+            {
+                return isMade;
+            }
+
+            public ProcessControlBlock next()
+            {
+                if (!isMade)
+                    throw new NoSuchElementException();
+
+                int count = process.numOperations;
+                ProcessControlBlock pcb = new ProcessControlBlock(context, (int)process.numProcesses,
+                                                                  State.NEW);
+                pcb.loadOperations(new OperationQueue(Arrays.copyOf(process.codes, count),
+                                                      Arrays.copyOf(process.cycles, count)),
+                                   process.numIO);
+                isMade = process.next();
+                return pcb;
+            }
+        };
+    }
+
+    /**
+     * \brief Reads the settings in the specification file.
+     */
+    private void readSpecFile(String specFilePath)
+    {
+        Scanner specScan = null;
+        try {
+            specScan = new Scanner(new FileInputStream(specFilePath));
+        } catch (FileNotFoundException e) {
+            throw new SimulationException("Workload generator file not found\n" +
+                                          "Please enter a valid file path");
+        }
+
+        if (!specScan.hasNextLine() || !specScan.nextLine().trim().equalsIgnoreCase(START_PROMPT))
+            throw new SimulationException("Workload generator file does not contain start prompt");
+
+        while (specScan.hasNextLine())
+        {
+            String line = specScan.nextLine().trim();
+            if (line.isEmpty())
+                continue;
+            if (line.startsWith("End"))
+                break;
+
+            String[] tokens = line.split(":");
+            if (tokens.length != 2)
+                throw new SimulationException("Malformed workload generator line: " + line);
+
+            String name = tokens[0].trim();
+            String value = tokens[1].trim();
+
+            switch (name.toLowerCase())
+            {
+                case "seed":
+                    seed = parseNumber(name, value);
+                    break;
+
+                case "processes":
+                    processes = Distribution.parse(name, value, 1);
+                    break;
+
+                case "operations per process":
+                    operationsPerProcess = Distribution.parse(name, value, 1);
+                    break;
+
+                case "compute cycles":
+                    computeCycles = Distribution.parse(name, value, 1);
+                    break;
+
+                case "io cycles":
+                    ioCycles = Distribution.parse(name, value, 1);
+                    break;
+
+                case "io ratio":
+                    ioRatio = parseRatio(name, value);
+                    break;
+
+                case "compute mix":
+                    computeMix = Mix.parse(name, value, false);
+                    break;
+
+                case "io mix":
+                    ioMix = Mix.parse(name, value, true);
+                    break;
+
+                case "admission window":
+                    admissionWindow = (int)parseNumber(name, value);
+                    if (admissionWindow < 1)
+                        throw new SimulationException("Admission window must be at least one");
+                    break;
+
+                default:
+                    throw new SimulationException("Unknown workload generator setting: " + name);
+            }
+        }
+
+        specScan.close();
+
+        if (processes == null || operationsPerProcess == null)
+            throw new SimulationException("Workload generator file needs the number of " +
+                                          "processes and operations per process");
+    }
+
+    private static long parseNumber(String name, String value)
+    {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new SimulationException(name + " must be a whole number: " + value);
+        }
+    }
+
+    private static double parseRatio(String name, String value)
+    {
+        double ratio;
+        try {
+            ratio = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new SimulationException(name + " must be a number: " + value);
+        }
+
+        if (ratio < 0 || ratio > 1)
+            throw new SimulationException(name + " must be between 0 and 1: " + value);
+        return ratio;
+    }
+
+    /**
+     * Makes the processes of a workload one at a time.
+     * The operations of the current process are kept in arrays that are
+     * reused for the next one, packed the way an OperationQueue keeps
+     * them. Every draw comes from one random stream in a fixed order, so
+     * the same seed always makes the same processes.
+     */
+    private class ProcessStream
+    {
+        private final SplittableRandom random;
+        private final long total;
+        long numProcesses;
+        int numOperations,
+            numIO;
+        byte[] codes;
+        int[] cycles;
+
+        ProcessStream(long seed)
+        {
+            random = new SplittableRandom(seed);
+            total = processes.sample(random);
+            numProcesses = 0;
+            codes = new byte[16];
+            cycles = new int[16];
+        }
+
+        /**
+         * \brief Makes the next process.
+         * \return False once every process has been made.
+         */
+        boolean next()
+        {
+            if (numProcesses == total)
+                return false;
+
+            numProcesses++;
+            numOperations = (int)operationsPerProcess.sample(random);
+            numIO = 0;
+            if (numOperations > codes.length)
+            {
+                codes = new byte[Math.max(numOperations, 2 * codes.length)];
+                cycles = new int[codes.length];
+            }
+
+            for (int i = 0; i < numOperations; i++)
+            {
+                if (random.nextDouble() < ioRatio)
+                {
+                    codes[i] = ioMix.sample(random);
+                    cycles[i] = (int)ioCycles.sample(random);
+                    numIO++;
+                }
+                else
+                {
+                    codes[i] = computeMix.sample(random);
+                    cycles[i] = (int)computeCycles.sample(random);
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A distribution counts and cycles are drawn from.
+     * Draws are rounded to whole numbers and kept at or above a minimum.
+     */
+    static class Distribution
+    {
+        private static final int CONSTANT = 0,
+                                 UNIFORM = 1,
+                                 EXPONENTIAL = 2,
+                                 NORMAL = 3;
+
+        private final int shape;
+        private final double a,
+                             b;
+        private final long minimum;
+
+        private Distribution(int shape, double a, double b, long minimum)
+        {
+            this.shape = shape;
+            this.a = a;
+            this.b = b;
+            this.minimum = minimum;
+        }
+
+        /**
+         * \brief Parses a number or a distribution.
+         * \param name Name of the setting, used for error messages.
+         * \param minimum The smallest value a draw can give.
+         */
+        static Distribution parse(String name, String value, long minimum)
+        {
+            String[] words = value.trim().toLowerCase().split("\\s+");
+
+            try {
+                if (words.length == 1)
+                    return new Distribution(CONSTANT, Long.parseLong(words[0]), 0, minimum);
+
+                if (words.length == 2 && words[0].equals("uniform"))
+                {
+                    String[] ends = words[1].split("-");
+                    long low = Long.parseLong(ends[0]);
+                    long high = Long.parseLong(ends[1]);
+                    if (ends.length == 2 && low <= high)
+                        return new Distribution(UNIFORM, low, high, minimum);
+                }
+
+                if (words.length == 2 && words[0].equals("exponential"))
+                {
+                    double mean = Double.parseDouble(words[1]);
+                    if (mean > 0)
+                        return new Distribution(EXPONENTIAL, mean, 0, minimum);
+                }
+
+                if (words.length == 3 && words[0].equals("normal"))
+                {
+                    double deviation = Double.parseDouble(words[2]);
+                    if (deviation >= 0)
+                        return new Distribution(NORMAL, Double.parseDouble(words[1]), deviation,
+                                                minimum);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // Falls through to the error below
+            }
+
+            throw new SimulationException(name + " is not a valid number or distribution: " + value);
+        }
+
+        /**
+         * \brief Draws a value.
+         */
+        long sample(SplittableRandom random)
+        {
+            double value;
+            switch (shape)
+            {
+                case UNIFORM:
+                    value = a + random.nextLong((long)(b - a) + 1);
+                    break;
+                case EXPONENTIAL:
+                    value = Math.round(-a * Math.log(1.0 - random.nextDouble()));
+                    break;
+                case NORMAL:
+                    value = Math.round(a + b * random.nextGaussian());
+                    break;
+                default:
+                    value = a;
+                    break;
+            }
+
+            return Math.max(minimum, (long)Math.min(value, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Weighted choice between kinds of operation.
+     * Each kind is written the way it is in a meta data file, followed by
+     * its weight, which is 1 if left out.
+     */
+    static class Mix
+    {
+        private final byte[] codes;
+        private final double[] cumulativeWeights;
+
+        private Mix(byte[] codes, double[] cumulativeWeights)
+        {
+            this.codes = codes;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        /**
+         * \brief Parses a list of weighted operations.
+         * \param name Name of the setting, used for error messages.
+         * \param isIO True if every operation must be input or output on
+         *        a device the resource manager can acquire, otherwise
+         *        none of them can be input or output.
+         */
+        static Mix parse(String name, String list, boolean isIO)
+        {
+            String[] entries = list.split(",");
+            byte[] codes = new byte[entries.length];
+            double[] weights = new double[entries.length];
+            double total = 0;
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                String entry = entries[i].trim();
+                int open = entry.indexOf('{');
+                int close = entry.indexOf('}');
+                if (open != 1 || close < open)
+                    throw new SimulationException(name + " has a malformed operation: " + entry);
+
+                OperationType type = OperationType.fromLetter(entry.charAt(0));
+                Device device = Device.fromLabel(entry.substring(open + 1, close));
+                boolean isInputOutput = type == OperationType.INPUT || type == OperationType.OUTPUT;
+                if (!CompiledWorkload.isLoadable(type, device) || isInputOutput != isIO ||
+                    (isIO && !ResourceManager.isSupported(device)))
+                    throw new SimulationException(name + " cannot have the operation " + entry);
+
+                double weight = 1;
+                String rest = entry.substring(close + 1).trim();
+                if (!rest.isEmpty())
+                {
+                    try {
+                        weight = Double.parseDouble(rest);
+                    } catch (NumberFormatException e) {
+                        weight = -1;
+                    }
+                    if (!(weight > 0))
+                        throw new SimulationException(name + " has a bad weight: " + entry);
+                }
+
+                codes[i] = OperationQueue.encode(type, device);
+                total += weight;
+                weights[i] = total;
+            }
+
+            return new Mix(codes, weights);
+        }
+
+        /**
+         * \brief Picks an operation by weight.
+         * \return The operation's packed type and device.
+         */
+        byte sample(SplittableRandom random)
+        {
+            double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            for (int i = 0; i < codes.length - 1; i++)
+            {
+                if (target < cumulativeWeights[i])
+                    return codes[i];
+            }
+
+            return codes[codes.length - 1];
+        }
+    }
+}